@@ -133,23 +133,23 @@ public class PurchaseManagerGoogleBilling implements PurchaseManager, PurchasesU
     private void fetchOfferDetails() {
         Gdx.app.debug(TAG,"Called fetchOfferDetails()");
         productDetailsMap.clear();
-        int offerSize = config.getOfferCount();
 
         List<QueryProductDetailsParams.Product> inAppProducts = new ArrayList<>();
         List<QueryProductDetailsParams.Product> subsProducts = new ArrayList<>();
 
-        for (int z = 0; z < offerSize; z++) {
-            Offer offer = config.getOffer(z);
-            String productType = mapOfferType(offer.getType());
-            QueryProductDetailsParams.Product product = QueryProductDetailsParams.Product.newBuilder()
-                    .setProductId(offer.getIdentifierForStore(storeName()))
-                    .setProductType(productType)
-                    .build();
+        for (OfferType offerType : OfferType.values()) {
+            String productType = mapOfferType(offerType);
+            for (String productId : config.getOfferIdentifiersForStore(offerType, storeName())) {
+                QueryProductDetailsParams.Product product = QueryProductDetailsParams.Product.newBuilder()
+                        .setProductId(productId)
+                        .setProductType(productType)
+                        .build();
 
-            if (ProductType.SUBS.equals(productType)) {
-                subsProducts.add(product);
-            } else {
-                inAppProducts.add(product);
+                if (ProductType.SUBS.equals(productType)) {
+                    subsProducts.add(product);
+                } else {
+                    inAppProducts.add(product);
+                }
             }
         }
 
@@ -9,7 +9,6 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.pay.FetchItemInformationException;
 import com.badlogic.gdx.pay.Information;
 import com.badlogic.gdx.pay.LoginRequiredException;
-import com.badlogic.gdx.pay.Offer;
 import com.badlogic.gdx.pay.OfferType;
 import com.badlogic.gdx.pay.PurchaseManager;
 import com.badlogic.gdx.pay.PurchaseManagerConfig;
@@ -169,17 +168,8 @@ public class HuaweiPurchaseManager implements PurchaseManager, AndroidEventListe
     }
 
     private List<String> getProductListByType(PurchaseManagerConfig config, OfferType offerType) {
-        List<String> productIdList = new ArrayList<>();
-
-        for (int i = 0; i < config.getOfferCount(); i++) {
-            Offer offer = config.getOffer(i);
-
-            if (offer.getType() == offerType) {
-                productIdList.add(offer.getIdentifier());
-            }
-        }
-
-        return productIdList;
+        // the product info request keeps the list, so hand it a copy of the shared one
+        return new ArrayList<>(config.getOfferIdentifiers(offerType));
     }
 
     private void notifyInstallationAfterOffersCheck(int offerType) {
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.pay.server.impl.PurchaseVerifieriOSApple;
+
+/** Parsing of verifyReceipt responses by {@link PurchaseVerifieriOSApple}, compared to the former line-based status search.
+ * The in-app count drives the response size: 1 is about 8 KB, 100 about 220 KB and 500 about 1 MB. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppleStatusParsingBenchmark {
+
+	@Param({"1", "100", "500"})
+	public int inAppCount;
+
+	private byte[] response;
+	private ExposedVerifier verifier;
+
+	@Setup
+	public void setup () throws Exception {
+		response = Payloads.appleVerifyReceiptResponse(inAppCount).getBytes("UTF-8");
+		verifier = new ExposedVerifier();
+	}
+
+	@Benchmark
+	public int lineBasedStatus () throws IOException {
+		return lineBasedExtractStatus(new ByteArrayInputStream(response));
+	}
+
+	@Benchmark
+	public int extractStatus () {
+		return verifier.extractStatus(new ByteArrayInputStream(response));
+	}
+
+	@Benchmark
+	public PurchaseVerifieriOSApple.ReceiptResponse parseResponseWithReceiptInfo () {
+		return verifier.parseResponse(new ByteArrayInputStream(response), true);
+	}
+
+	/** The status extraction gdx-pay used before streaming: reads lines into strings and searches them. */
+	static int lineBasedExtractStatus (InputStream inputStream) throws IOException {
+		BufferedReader rd = new BufferedReader(new InputStreamReader(inputStream));
+		try {
+			String line;
+			final String search = "\"status\":";
+			while ((line = rd.readLine()) != null) {
+				int indexOf = line.indexOf(search);
+				if (indexOf == -1) continue;
+				int start = indexOf + search.length();
+				while (Character.isWhitespace(line.charAt(start))) {
+					start++;
+				}
+				int end = start + 1;
+				while (Character.isDigit(line.charAt(end))) {
+					end++;
+				}
+				return Integer.parseInt(line.substring(start, end));
+			}
+			return -1;
+		} finally {
+			rd.close();
+		}
+	}
+
+	/** Makes the protected parsers accessible. */
+	static final class ExposedVerifier extends PurchaseVerifieriOSApple {
+		@Override
+		public int extractStatus (InputStream inputStream) {
+			return super.extractStatus(inputStream);
+		}
+
+		@Override
+		public ReceiptResponse parseResponse (InputStream inputStream, boolean withReceiptInfo) {
+			return super.parseResponse(inputStream, withReceiptInfo);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.pay.server.util.Base64Util;
+
+/** {@link Base64Util} encoding and decoding, with {@link java.util.Base64} as reference. 256 bytes is a Google Play RSA-2048
+ * signature, 6 KB a typical App Store receipt and 64 KB a receipt with a long purchase history. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64Benchmark {
+
+	@Param({"256", "6144", "65536"})
+	public int size;
+
+	private byte[] data;
+	private String encoded;
+	private byte[] encodedAscii;
+	private byte[] decoded;
+	private ByteBuffer decodedBuffer;
+
+	@Setup
+	public void setup () {
+		data = Payloads.randomBytes(size);
+		encoded = new String(Base64Util.encode(data));
+		encodedAscii = encoded.getBytes(Charset.forName("US-ASCII"));
+		decoded = new byte[size];
+		decodedBuffer = ByteBuffer.wrap(decoded);
+	}
+
+	@Benchmark
+	public char[] encode () {
+		return Base64Util.encode(data);
+	}
+
+	@Benchmark
+	public byte[] decode () {
+		return Base64Util.decode(encoded);
+	}
+
+	@Benchmark
+	public int decodeIntoBuffer () {
+		decodedBuffer.clear();
+		return Base64Util.decode(encoded, decodedBuffer);
+	}
+
+	@Benchmark
+	public int decodeAsciiIntoArray () {
+		return Base64Util.decode(encodedAscii, 0, encodedAscii.length, decoded, 0);
+	}
+
+	@Benchmark
+	public byte[] jdkDecode () {
+		return Base64.getDecoder().decode(encoded);
+	}
+
+	@Benchmark
+	public int jdkDecodeAsciiIntoArray () {
+		return Base64.getDecoder().decode(encodedAscii, decoded);
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.pay.BinaryCodec;
+import com.badlogic.gdx.pay.PurchaseManagerConfig;
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+
+/** {@link BinaryCodec} throughput for a Google Play transaction, against {@link Transaction#toString()} as the cost of
+ * building a string from all fields. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryCodecBenchmark {
+
+	private Transaction transaction;
+	private byte[] encoded;
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setup () {
+		transaction = new Transaction();
+		transaction.setIdentifier("full_edition");
+		transaction.setStoreName(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE);
+		transaction.setOrderId("GPA.3345-1234-5678-90123");
+		transaction.setRequestId("opaque-token-up-to-150-characters");
+		transaction.setPurchaseTime(new Date(1700000000123L));
+		transaction.setPurchaseCost(499);
+		transaction.setPurchaseCostCurrency("EUR");
+		transaction.setTransactionData(Payloads.GOOGLE_PURCHASE_JSON);
+		transaction.setTransactionDataSignature(new String(Base64Util.encode(Payloads.randomBytes(256))));
+		encoded = BinaryCodec.encode(transaction);
+		buffer = ByteBuffer.allocate(encoded.length * 2);
+	}
+
+	@Benchmark
+	public byte[] encode () {
+		return BinaryCodec.encode(transaction);
+	}
+
+	@Benchmark
+	public int encodeIntoBuffer () {
+		buffer.clear();
+		BinaryCodec.writeTransaction(transaction, buffer);
+		return buffer.position();
+	}
+
+	@Benchmark
+	public Transaction decode () throws IOException {
+		return BinaryCodec.decodeTransaction(encoded);
+	}
+
+	@Benchmark
+	public String toStringBaseline () {
+		return transaction.toString();
+	}
+}
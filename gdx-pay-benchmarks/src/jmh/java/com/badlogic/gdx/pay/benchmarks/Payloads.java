@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Random;
+
+import com.badlogic.gdx.pay.server.util.Base64Util;
+
+/** Realistically sized store payloads shared by the benchmarks. */
+final class Payloads {
+
+	/** A Google Play purchase as returned by the billing library (~450 bytes). */
+	static final String GOOGLE_PURCHASE_JSON = "{\"orderId\":\"GPA.3372-1795-4423-61437\","
+		+ "\"packageName\":\"com.badlogic.gdx.pay.sample\",\"productId\":\"com.badlogic.gdx.pay.sample.coins_1000\","
+		+ "\"purchaseTime\":1693475224215,\"purchaseState\":0,"
+		+ "\"purchaseToken\":\"dmbkfgjhpnlnkpmofpcjbcmm.AO-J1OwpOvRhlhXO3j4Rc7rGMrN3aS8Jq6hbtMz0rwSnOo4PlqKSkPo-"
+		+ "nM6IaNUovhS0fdCPbmVjSBdBB_0uDxKGIeO4sVF84x3XpX0uTE2m8Y3ro2tzzJc\",\"quantity\":1,\"acknowledged\":false,"
+		+ "\"obfuscatedAccountId\":\"6c3f7f8e0a4b4d1ab2f9c0e71d5a3c2b\"}";
+
+	/** Returns deterministic pseudo-random bytes, e.g. as stand-in for a binary receipt or signature. */
+	static byte[] randomBytes (int length) {
+		byte[] bytes = new byte[length];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+
+	/** Builds a verifyReceipt response as returned by Apple, with the given number of in-app purchases in both the receipt and
+	 * "latest_receipt_info". Like Apple's, the response is a single line with "status" at the very end, so parsers have to go
+	 * through the whole body. */
+	static String appleVerifyReceiptResponse (int inAppCount) {
+		StringBuilder inApp = new StringBuilder();
+		for (int i = 0; i < inAppCount; i++) {
+			if (i > 0) inApp.append(',');
+			long purchaseMs = 1693475224000L + i * 2592000000L;
+			inApp.append("{\"quantity\":\"1\",\"product_id\":\"com.badlogic.gdx.pay.sample.subscription_monthly\",")
+				.append("\"transaction_id\":\"").append(1000000801234567L + i).append("\",")
+				.append("\"original_transaction_id\":\"1000000801234567\",")
+				.append("\"purchase_date\":\"2023-08-31 09:47:04 Etc/GMT\",\"purchase_date_ms\":\"").append(purchaseMs).append("\",")
+				.append("\"purchase_date_pst\":\"2023-08-31 02:47:04 America/Los_Angeles\",")
+				.append("\"original_purchase_date\":\"2023-08-31 09:47:04 Etc/GMT\",")
+				.append("\"original_purchase_date_ms\":\"1693475224000\",")
+				.append("\"expires_date\":\"2023-09-30 09:47:04 Etc/GMT\",\"expires_date_ms\":\"").append(purchaseMs + 2592000000L)
+				.append("\",\"web_order_line_item_id\":\"").append(230000123456789L + i).append("\",")
+				.append("\"is_trial_period\":\"false\",\"is_in_intro_offer_period\":\"false\",")
+				.append("\"in_app_ownership_type\":\"PURCHASED\",\"subscription_group_identifier\":\"20654321\"}");
+		}
+		String latestReceipt = new String(Base64Util.encode(randomBytes(4096 + inAppCount * 600)));
+		return "{\"receipt\":{\"receipt_type\":\"Production\",\"adam_id\":1234567890,\"app_item_id\":1234567890,"
+			+ "\"bundle_id\":\"com.badlogic.gdx.pay.sample\",\"application_version\":\"42\",\"download_id\":84012345678901,"
+			+ "\"version_external_identifier\":858123456,\"receipt_creation_date_ms\":\"1693475230000\","
+			+ "\"request_date_ms\":\"1693475231000\",\"original_purchase_date_ms\":\"1693000000000\","
+			+ "\"original_application_version\":\"1.0\",\"in_app\":[" + inApp + "]},"
+			+ "\"environment\":\"Production\",\"latest_receipt_info\":[" + inApp + "],"
+			+ "\"latest_receipt\":\"" + latestReceipt + "\",\"status\":0}";
+	}
+
+	/** Generates a 2048 bit RSA key pair, the size Google Play uses for license keys. */
+	static KeyPair generateRsaKeyPair () throws GeneralSecurityException {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		return generator.generateKeyPair();
+	}
+
+	/** Signs the data like Google Play does and returns the Base64 encoded signature. */
+	static String sign (PrivateKey privateKey, String data) throws GeneralSecurityException {
+		Signature signature = Signature.getInstance("SHA1withRSA");
+		signature.initSign(privateKey);
+		signature.update(data.getBytes());
+		return new String(Base64Util.encode(signature.sign()));
+	}
+
+	private Payloads () {
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.pay.PurchaseManagerConfig;
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.PurchaseVerifier;
+import com.badlogic.gdx.pay.server.PurchaseVerifierManager;
+
+/** Dispatch overhead of {@link PurchaseVerifierManager#isValid(Transaction)}: the verifiers themselves do no work. The
+ * hotSwap group measures dispatch while another thread keeps replacing the verifier. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PurchaseVerifierManagerBenchmark {
+
+	private PurchaseVerifierManager manager;
+	private Transaction googleTransaction;
+	private Transaction unknownStoreTransaction;
+	private PurchaseVerifier[] googleVerifiers;
+	private int swaps;
+
+	@Setup
+	public void setup () {
+		manager = new PurchaseVerifierManager(false);
+		manager.addVerifier(new NoOpVerifier(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE));
+		manager.addVerifier(new NoOpVerifier(PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON));
+		manager.addVerifier(new NoOpVerifier(PurchaseManagerConfig.STORE_NAME_IOS_APPLE));
+
+		googleTransaction = new Transaction();
+		googleTransaction.setStoreName(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE);
+		googleTransaction.setOrderId("GPA.3372-1795-4423-61437");
+		googleTransaction.setTransactionData(Payloads.GOOGLE_PURCHASE_JSON);
+
+		unknownStoreTransaction = new Transaction();
+		unknownStoreTransaction.setStoreName(PurchaseManagerConfig.STORE_NAME_DESKTOP_STEAM);
+
+		googleVerifiers = new PurchaseVerifier[] {new NoOpVerifier(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE),
+			new NoOpVerifier(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE)};
+	}
+
+	@Benchmark
+	public boolean dispatch () {
+		return manager.isValid(googleTransaction);
+	}
+
+	@Benchmark
+	public boolean dispatchNoVerifier () {
+		return manager.isValid(unknownStoreTransaction);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean dispatchContended () {
+		return manager.isValid(googleTransaction);
+	}
+
+	@Benchmark
+	@Group("hotSwap")
+	@GroupThreads(3)
+	public boolean dispatchDuringSwap () {
+		return manager.isValid(googleTransaction);
+	}
+
+	@Benchmark
+	@Group("hotSwap")
+	@GroupThreads(1)
+	public PurchaseVerifier swap () {
+		return manager.replaceVerifier(googleVerifiers[swaps++ & 1]);
+	}
+
+	static final class NoOpVerifier implements PurchaseVerifier {
+		private final String storeName;
+
+		NoOpVerifier (String storeName) {
+			this.storeName = storeName;
+		}
+
+		@Override
+		public String storeName () {
+			return storeName;
+		}
+
+		@Override
+		public boolean isValid (Transaction transaction) {
+			return true;
+		}
+	}
+}
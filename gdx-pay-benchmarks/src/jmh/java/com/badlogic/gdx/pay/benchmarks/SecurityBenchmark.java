@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.pay.server.impl.Security;
+import com.badlogic.gdx.pay.server.impl.SignatureVerifier;
+
+/** Google Play signature verification: the static {@link Security#verify} path against the pooled
+ * {@link SignatureVerifier}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityBenchmark {
+
+	private static final Security.SecurityLogger SILENT = new Security.SecurityLogger() {
+		@Override
+		public void log (String message) {
+		}
+	};
+
+	private KeyPair keyPair;
+	private String signature;
+	private SignatureVerifier signatureVerifier;
+
+	@Setup
+	public void setup () throws GeneralSecurityException {
+		keyPair = Payloads.generateRsaKeyPair();
+		signature = Payloads.sign(keyPair.getPrivate(), Payloads.GOOGLE_PURCHASE_JSON);
+		signatureVerifier = new SignatureVerifier(keyPair.getPublic());
+	}
+
+	@Benchmark
+	public boolean staticVerify () {
+		return Security.verify(keyPair.getPublic(), Payloads.GOOGLE_PURCHASE_JSON, signature, SILENT);
+	}
+
+	@Benchmark
+	public boolean pooledVerify () {
+		return signatureVerifier.verify(Payloads.GOOGLE_PURCHASE_JSON, signature, SILENT);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean staticVerifyContended () {
+		return Security.verify(keyPair.getPublic(), Payloads.GOOGLE_PURCHASE_JSON, signature, SILENT);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean pooledVerifyContended () {
+		return signatureVerifier.verify(Payloads.GOOGLE_PURCHASE_JSON, signature, SILENT);
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay;
+
+import com.badlogic.gdx.Gdx;
+
+/**
+ * Serves product information from an {@link InformationCache} until the store has delivered fresh information, so a shop
+ * screen can show names and prices right after start instead of waiting for the store:
+ * <pre>
+ * purchaseManager = new CachingPurchaseManager(purchaseManager,
+ *         new FileInformationCache(Gdx.files.local("gdx-pay-information.bin"), 7, TimeUnit.DAYS));
+ * purchaseManager.install(observer, config, true);
+ * </pre>
+ * Everything else is passed on to the wrapped purchase manager. Once it is installed, the information it fetched for the
+ * configured offers is put into the cache, which is then flushed on a background thread.
+ */
+public class CachingPurchaseManager implements PurchaseManager {
+
+    private static final String TAG = "GdxPay/InformationCache";
+
+    private final PurchaseManager delegate;
+    private final InformationCache cache;
+
+    public CachingPurchaseManager(PurchaseManager delegate, InformationCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public String storeName() {
+        return delegate.storeName();
+    }
+
+    @Override
+    public void install(final PurchaseObserver observer, final PurchaseManagerConfig config, boolean autoFetchInformation) {
+        delegate.install(new ForwardingPurchaseObserver(observer) {
+            @Override
+            public void handleInstall() {
+                refresh(config);
+                super.handleInstall();
+            }
+        }, config, autoFetchInformation);
+    }
+
+    @Override
+    public boolean installed() {
+        return delegate.installed();
+    }
+
+    @Override
+    public void dispose() {
+        delegate.dispose();
+    }
+
+    @Override
+    public void purchase(String identifier) {
+        delegate.purchase(identifier);
+    }
+
+    @Override
+    public void purchaseRestore() {
+        delegate.purchaseRestore();
+    }
+
+    /**
+     * Returns the information of the store if it has any, else the cached one.
+     */
+    @Override
+    public Information getInformation(String identifier) {
+        Information information = delegate.getInformation(identifier);
+        if (isAvailable(information)) {
+            return information;
+        }
+        Information cached = cache.get(identifier);
+        return cached != null ? cached : information;
+    }
+
+    /**
+     * Puts the store's information for all offers into the cache and flushes it in the background.
+     */
+    void refresh(PurchaseManagerConfig config) {
+        boolean changed = false;
+        for (int i = 0; i < config.getOfferCount(); i++) {
+            String identifier = config.getOffer(i).getIdentifier();
+            Information information = delegate.getInformation(identifier);
+            if (isAvailable(information)) {
+                cache.put(identifier, information);
+                changed = true;
+            }
+        }
+        if (changed) {
+            Thread flush = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        cache.flush();
+                    } catch (RuntimeException e) {
+                        if (Gdx.app != null) {
+                            Gdx.app.error(TAG, "Failed to flush information cache", e);
+                        }
+                    }
+                }
+            }, "gdx-pay-information-cache");
+            flush.setDaemon(true);
+            flush.start();
+        }
+    }
+
+    private static boolean isAvailable(Information information) {
+        return information != null && !information.equals(Information.UNAVAILABLE);
+    }
+
+    /**
+     * Passes all callbacks on to another observer.
+     */
+    private static class ForwardingPurchaseObserver implements PurchaseObserver {
+        private final PurchaseObserver observer;
+
+        ForwardingPurchaseObserver(PurchaseObserver observer) {
+            this.observer = observer;
+        }
+
+        @Override
+        public void handleInstall() {
+            observer.handleInstall();
+        }
+
+        @Override
+        public void handleInstallError(Throwable e) {
+            observer.handleInstallError(e);
+        }
+
+        @Override
+        public void handleRestore(Transaction[] transactions) {
+            observer.handleRestore(transactions);
+        }
+
+        @Override
+        public void handleRestoreError(Throwable e) {
+            observer.handleRestoreError(e);
+        }
+
+        @Override
+        public void handlePurchase(Transaction transaction) {
+            observer.handlePurchase(transaction);
+        }
+
+        @Override
+        public void handlePurchaseError(Throwable e) {
+            observer.handlePurchaseError(e);
+        }
+
+        @Override
+        public void handlePurchaseCanceled() {
+            observer.handlePurchaseCanceled();
+        }
+    }
+}
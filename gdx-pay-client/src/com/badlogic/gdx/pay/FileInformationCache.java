@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link InformationCache} persisted to a file in the compact binary format of {@link BinaryCodec}:
+ * <pre>
+ * InformationCache cache = new FileInformationCache(Gdx.files.local("gdx-pay-information.bin"), 7, TimeUnit.DAYS);
+ * </pre>
+ * The file is read on first access. Information older than the maximum age is not served and dropped on the next
+ * {@link #flush()}. An unreadable file (e.g. written by a newer version) is ignored, so the cache starts empty.
+ */
+public class FileInformationCache implements InformationCache {
+
+    static final int MAGIC = 0x47504943; // "GPIC"
+    /** Version 2 stores the information in the {@link BinaryCodec} format. */
+    static final int VERSION = 2;
+    /** Upper bound for the initial map capacity: the entry count in the file is not trusted. */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final FileHandle file;
+    private final long maxAgeMillis;
+
+    /** Guarded by this; null until loaded. */
+    private Map<String, Entry> entries;
+
+    /**
+     * @param file   the file to persist to, e.g. a local file
+     * @param maxAge how long information is served after it was fetched from the store
+     * @param unit   the unit of maxAge
+     */
+    public FileInformationCache(FileHandle file, long maxAge, TimeUnit unit) {
+        this.file = file;
+        this.maxAgeMillis = unit.toMillis(maxAge);
+    }
+
+    @Override
+    public synchronized Information get(String identifier) {
+        Entry entry = entries().get(identifier);
+        if (entry == null || isExpired(entry, System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.information;
+    }
+
+    @Override
+    public synchronized void put(String identifier, Information information) {
+        entries().put(identifier, new Entry(information, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void flush() {
+        Map<String, Entry> snapshot;
+        synchronized (this) {
+            snapshot = new HashMap<String, Entry>(entries());
+        }
+        // write next to the file first, so a crash never leaves a truncated cache behind
+        FileHandle temp = file.sibling(file.name() + ".tmp");
+        try {
+            OutputStream out = temp.write(false);
+            try {
+                writeTo(snapshot, System.currentTimeMillis(), out);
+            } finally {
+                out.close();
+            }
+            temp.moveTo(file);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Failed to write information cache " + file, e);
+        }
+    }
+
+    private Map<String, Entry> entries() {
+        if (entries == null) {
+            entries = new HashMap<String, Entry>();
+            if (file.exists()) {
+                try {
+                    InputStream in = file.read();
+                    try {
+                        entries.putAll(readFrom(in));
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    // corrupt or from an unknown version: start over
+                    entries.clear();
+                } catch (RuntimeException e) {
+                    // GdxRuntimeException if the file cannot be read, anything else if it is corrupt
+                    entries.clear();
+                }
+            }
+        }
+        return entries;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.fetchedAt > maxAgeMillis;
+    }
+
+    void writeTo(Map<String, Entry> entries, long now, OutputStream outputStream) throws IOException {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (!isExpired(entry, now)) count++;
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(count);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (isExpired(entry.getValue(), now)) continue;
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().fetchedAt);
+            BinaryCodec.writeInformation(entry.getValue().information, out);
+        }
+        out.flush();
+    }
+
+    static Map<String, Entry> readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not an information cache of version " + VERSION);
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid entry count: " + count);
+        }
+        Map<String, Entry> entries = new HashMap<String, Entry>(Math.min(Math.max(16, count), MAX_INITIAL_CAPACITY) * 2);
+        for (int i = 0; i < count; i++) {
+            String identifier = in.readUTF();
+            long fetchedAt = in.readLong();
+            entries.put(identifier, new Entry(BinaryCodec.readInformation(in), fetchedAt));
+        }
+        return entries;
+    }
+
+    static final class Entry {
+        final Information information;
+        final long fetchedAt;
+
+        Entry(Information information, long fetchedAt) {
+            this.information = information;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay;
+
+/**
+ * Remembers the last known {@link Information} per product identifier, so it can be shown before the store has answered.
+ * See {@link CachingPurchaseManager}.
+ */
+public interface InformationCache {
+
+    /**
+     * Returns the cached information for the identifier.
+     *
+     * @return the information, or null if none is cached or it is older than the maximum age.
+     */
+    Information get(String identifier);
+
+    /**
+     * Caches information fetched from the store.
+     */
+    void put(String identifier, Information information);
+
+    /**
+     * Persists the cached information. Called from a background thread after the store delivered fresh information.
+     */
+    void flush();
+}
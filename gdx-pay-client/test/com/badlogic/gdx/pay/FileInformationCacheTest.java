@@ -0,0 +1,97 @@
+package com.badlogic.gdx.pay;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FileInformationCacheTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("information", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void survivesRestart() {
+        Information information = Information.newBuilder()
+                .localName("Full edition")
+                .localDescription("Access to all themes")
+                .localPricing("€ 1.00")
+                .priceInCents(100)
+                .priceAsDouble(1.0)
+                .priceCurrencyCode("EUR")
+                .freeTrialPeriod(new FreeTrialPeriod(7, FreeTrialPeriod.PeriodUnit.DAY))
+                .build();
+        FileInformationCache cache = new FileInformationCache(new FileHandle(file), 1, TimeUnit.DAYS);
+        cache.put("full_edition", information);
+        cache.put("coins", new Information(null, null, "€ 0.50"));
+        cache.flush();
+
+        FileInformationCache restarted = new FileInformationCache(new FileHandle(file), 1, TimeUnit.DAYS);
+        Information restored = restarted.get("full_edition");
+
+        assertEquals(information, restored);
+        assertEquals(Integer.valueOf(100), restored.getPriceInCents());
+        assertEquals(1.0, restored.getPriceAsDouble(), 0);
+        assertEquals("EUR", restored.getPriceCurrencyCode());
+        assertEquals(new FreeTrialPeriod(7, FreeTrialPeriod.PeriodUnit.DAY), restored.getFreeTrialPeriod());
+        assertEquals("€ 0.50", restarted.get("coins").getLocalPricing());
+        assertNull(restarted.get("coins").getLocalName());
+        assertNull(restarted.get("unknown"));
+    }
+
+    @Test
+    public void doesNotServeExpiredInformation() throws Exception {
+        FileInformationCache cache = new FileInformationCache(new FileHandle(file), 0, TimeUnit.MILLISECONDS);
+        cache.put("coins", new Information("Coins", null, "€ 0.50"));
+        Thread.sleep(5);
+
+        assertNull(cache.get("coins"));
+    }
+
+    @Test
+    public void ignoresUnreadableFile() {
+        new FileHandle(file).writeBytes(new byte[]{1, 2, 3}, false);
+
+        FileInformationCache cache = new FileInformationCache(new FileHandle(file), 1, TimeUnit.DAYS);
+
+        assertNull(cache.get("coins"));
+    }
+
+    @Test
+    public void ignoresCorruptEntryCount() throws IOException {
+        writeHeader(Integer.MAX_VALUE);
+        assertNull(new FileInformationCache(new FileHandle(file), 1, TimeUnit.DAYS).get("coins"));
+
+        writeHeader(-1);
+        assertNull(new FileInformationCache(new FileHandle(file), 1, TimeUnit.DAYS).get("coins"));
+    }
+
+    private void writeHeader(int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FileInformationCache.MAGIC);
+        out.writeByte(FileInformationCache.VERSION);
+        out.writeInt(count);
+        out.close();
+        new FileHandle(file).writeBytes(bytes.toByteArray(), false);
+    }
+}
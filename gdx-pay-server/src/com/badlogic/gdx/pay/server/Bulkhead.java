@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/** Limits the verifications of one store running at the same time, so a slow store cannot tie up the threads all stores
+ * share. Assign one per store with {@link PurchaseVerifierManager#setBulkhead(String, Bulkhead)}:
+ *
+ * <pre>
+ * verifier.setBulkhead(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, Bulkhead.newBuilder()
+ *   .maxConcurrent(32)
+ *   .maxQueued(256)
+ *   .rejectionPolicy(Bulkhead.RejectionPolicy.RETRYABLE)
+ *   .build());
+ * </pre>
+ *
+ * Up to {@link Builder#maxConcurrent(int)} verifications hold a permit and run; asynchronous verifications beyond that wait
+ * in a queue and synchronous ones block, up to {@link Builder#maxQueued(int)} in total. Verifications arriving when the queue
+ * is full are handled according to the {@link RejectionPolicy}. */
+public final class Bulkhead {
+
+	/** What happens to a verification arriving when all permits are taken and the queue is full. */
+	public enum RejectionPolicy {
+		/** The verification is not run; its result is {@link VerificationResult.Status#RETRYABLE}. */
+		RETRYABLE,
+		/** The verification runs on the calling thread without a permit, which throttles the caller. */
+		CALLER_RUNS;
+	}
+
+	private final int maxConcurrent;
+	private final int maxQueued;
+	private final long maxWaitNanos;
+	private final RejectionPolicy rejectionPolicy;
+
+	private final Semaphore permits;
+	/** Asynchronous verifications waiting for a permit. */
+	private final ConcurrentLinkedQueue<Task> queue = new ConcurrentLinkedQueue<Task>();
+	/** Queued asynchronous plus blocked synchronous verifications. */
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+
+	private Bulkhead (Builder builder) {
+		maxConcurrent = builder.maxConcurrent;
+		maxQueued = builder.maxQueued;
+		maxWaitNanos = builder.maxWaitNanos;
+		rejectionPolicy = builder.rejectionPolicy;
+		permits = new Semaphore(maxConcurrent);
+	}
+
+	public static Builder newBuilder () {
+		return new Builder();
+	}
+
+	public int getMaxConcurrent () {
+		return maxConcurrent;
+	}
+
+	public int getMaxQueued () {
+		return maxQueued;
+	}
+
+	public RejectionPolicy getRejectionPolicy () {
+		return rejectionPolicy;
+	}
+
+	/** Returns the number of verifications holding a permit. */
+	public int getActiveCount () {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	/** Returns the number of verifications waiting for a permit. */
+	public int getQueuedCount () {
+		return queued.get();
+	}
+
+	/** Returns the number of verifications that arrived when the queue was full. */
+	public long getRejectedCount () {
+		return rejected.get();
+	}
+
+	/** Runs a verification on the calling thread once a permit is free.
+	 *
+	 * @param verification The verification to run.
+	 * @param rejected Supplies the result if the verification is rejected.
+	 * @return The verification's result or the rejected result. */
+	<T> T call (Supplier<T> verification, Supplier<T> rejected) {
+		if (!permits.tryAcquire()) {
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				return reject(verification, rejected);
+			}
+			boolean acquired;
+			try {
+				acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return rejected.get();
+			} finally {
+				queued.decrementAndGet();
+			}
+			if (!acquired) {
+				return reject(verification, rejected);
+			}
+		}
+		try {
+			return verification.get();
+		} finally {
+			release();
+		}
+	}
+
+	/** Returns an executor that runs tasks on the given executor while holding a permit. If a task is rejected, the executor
+	 * runs it on the calling thread or throws a {@link RejectedExecutionException}, depending on the rejection policy. A queued
+	 * task that the given executor refuses once a permit is free is not run; it is passed to onRejected instead, which must
+	 * fail the verification waiting for it. */
+	Executor executor (final Executor executor, final Consumer<? super RejectedExecutionException> onRejected) {
+		return task -> {
+			if (!offer(new Task(task, executor, onRejected))) {
+				rejected.incrementAndGet();
+				if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+					task.run();
+				} else {
+					throw new RejectedExecutionException("Too many concurrent verifications");
+				}
+			}
+		};
+	}
+
+	private <T> T reject (Supplier<T> verification, Supplier<T> rejectedResult) {
+		rejected.incrementAndGet();
+		return rejectionPolicy == RejectionPolicy.CALLER_RUNS ? verification.get() : rejectedResult.get();
+	}
+
+	private boolean offer (Task task) {
+		if (permits.tryAcquire()) {
+			try {
+				dispatch(task);
+			} catch (RuntimeException e) {
+				release();
+				throw e;
+			}
+			return true;
+		}
+		if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			return false;
+		}
+		queue.offer(task);
+		// a permit may have been released since we tried
+		drain();
+		return true;
+	}
+
+	/** Hands a task to its executor; the caller holds a permit for it and must give it back if the executor refuses. */
+	private void dispatch (final Task task) {
+		task.executor.execute(() -> {
+			try {
+				task.runnable.run();
+			} finally {
+				release();
+			}
+		});
+	}
+
+	private void release () {
+		permits.release();
+		drain();
+	}
+
+	/** Dispatches queued tasks while permits are free. */
+	private void drain () {
+		while (!queue.isEmpty() && permits.tryAcquire()) {
+			Task task = queue.poll();
+			if (task == null) {
+				permits.release();
+				return;
+			}
+			queued.decrementAndGet();
+			try {
+				dispatch(task);
+			} catch (RuntimeException e) {
+				// the executor refused the task; running it here would take this thread and exceed the permits. Give the
+				// permit back without draining again, the loop goes on with the next task
+				permits.release();
+				rejected.incrementAndGet();
+				task.onRejected.accept(e instanceof RejectedExecutionException ? (RejectedExecutionException)e
+					: new RejectedExecutionException(e));
+			}
+		}
+	}
+
+	private static final class Task {
+		final Runnable runnable;
+		final Executor executor;
+		final Consumer<? super RejectedExecutionException> onRejected;
+
+		Task (Runnable runnable, Executor executor, Consumer<? super RejectedExecutionException> onRejected) {
+			this.runnable = runnable;
+			this.executor = executor;
+			this.onRejected = onRejected;
+		}
+	}
+
+	public static final class Builder {
+		private int maxConcurrent = 16;
+		private int maxQueued = 256;
+		private long maxWaitNanos = TimeUnit.SECONDS.toNanos(15);
+		private RejectionPolicy rejectionPolicy = RejectionPolicy.RETRYABLE;
+
+		private Builder () {
+		}
+
+		/** The number of verifications that may run at the same time. Default 16. */
+		public Builder maxConcurrent (int val) {
+			if (val < 1) {
+				throw new IllegalArgumentException("maxConcurrent must be at least 1: " + val);
+			}
+			maxConcurrent = val;
+			return this;
+		}
+
+		/** The number of verifications that may wait for a permit, 0 to reject as soon as all permits are taken. Default 256. */
+		public Builder maxQueued (int val) {
+			if (val < 0) {
+				throw new IllegalArgumentException("maxQueued must not be negative: " + val);
+			}
+			maxQueued = val;
+			return this;
+		}
+
+		/** How long a synchronous verification waits for a permit before it is rejected. Default 15 seconds. */
+		public Builder maxWait (long val, TimeUnit unit) {
+			maxWaitNanos = unit.toNanos(val);
+			return this;
+		}
+
+		/** What happens to verifications arriving when the queue is full. Default {@link RejectionPolicy#RETRYABLE}. */
+		public Builder rejectionPolicy (RejectionPolicy val) {
+			rejectionPolicy = val;
+			return this;
+		}
+
+		public Bulkhead build () {
+			return new Bulkhead(this);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.gdx.pay.Transaction;
+
+/** Caches the results of another verifier. Clients resend the same transactions on every restore and app start, so most
+ * verifications repeat a previous one.
+ *
+ * <pre>
+ * verifier.addVerifier(new CachingPurchaseVerifier(new PurchaseVerifieriOSApple(), 100000, 24, 1, TimeUnit.HOURS));
+ * </pre>
+ *
+ * Entries are keyed by store name and a SHA-256 digest of every transaction field a verifier reads (product, order and
+ * request ids, transaction data and signature), so a tampered transaction never hits the entry of the original. Valid and
+ * invalid results have separate time-to-lives; the least recently used entry is evicted when the cache is full. Retryable,
+ * unsupported and {@link VerificationResult#isFallback() fallback} results are never cached. */
+public class CachingPurchaseVerifier implements PurchaseVerifier {
+
+	private final PurchaseVerifier delegate;
+	private final int maxSize;
+	private final long positiveTtlNanos;
+	private final long negativeTtlNanos;
+
+	/** Least recently used first. */
+	private final LinkedHashMap<String, Entry> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/** @param delegate The verifier doing the actual verification.
+	 * @param maxSize The maximum number of cached results.
+	 * @param positiveTtl How long valid results are cached.
+	 * @param negativeTtl How long invalid results are cached, 0 to not cache them.
+	 * @param unit The unit of the time-to-lives. */
+	public CachingPurchaseVerifier (PurchaseVerifier delegate, int maxSize, long positiveTtl, long negativeTtl,
+		TimeUnit unit) {
+		this.delegate = delegate;
+		this.maxSize = maxSize;
+		this.positiveTtlNanos = unit.toNanos(positiveTtl);
+		this.negativeTtlNanos = unit.toNanos(negativeTtl);
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	}
+
+	@Override
+	public String storeName () {
+		return delegate.storeName();
+	}
+
+	@Override
+	public boolean isValid (Transaction transaction) {
+		return verify(transaction).isValid();
+	}
+
+	@Override
+	public VerificationResult verify (Transaction transaction) {
+		String key = TransactionKeys.of(transaction);
+		VerificationResult result = lookup(key);
+		if (result == null) {
+			result = delegate.verify(transaction);
+			store(key, result);
+		}
+		return result;
+	}
+
+	@Override
+	public CompletionStage<VerificationResult> isValidAsync (Transaction transaction, Executor executor) {
+		final String key = TransactionKeys.of(transaction);
+		VerificationResult result = lookup(key);
+		if (result != null) {
+			return CompletableFuture.completedFuture(result);
+		}
+		return delegate.isValidAsync(transaction, executor).thenApply(verified -> {
+			store(key, verified);
+			return verified;
+		});
+	}
+
+	/** Serves cached results and passes only the remaining transactions on to the delegate as one batch. */
+	@Override
+	public List<VerificationResult> verifyBatch (List<Transaction> transactions) {
+		List<VerificationResult> results = new ArrayList<VerificationResult>(transactions.size());
+		List<String> missingKeys = new ArrayList<String>();
+		List<Transaction> missing = new ArrayList<Transaction>();
+		for (Transaction transaction : transactions) {
+			String key = TransactionKeys.of(transaction);
+			VerificationResult result = lookup(key);
+			results.add(result);
+			if (result == null) {
+				missingKeys.add(key);
+				missing.add(transaction);
+			}
+		}
+		if (!missing.isEmpty()) {
+			List<VerificationResult> verified = delegate.verifyBatch(missing);
+			int m = 0;
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i) == null) {
+					results.set(i, verified.get(m));
+					store(missingKeys.get(m), verified.get(m));
+					m++;
+				}
+			}
+		}
+		return results;
+	}
+
+	/** Returns the number of verifications answered from the cache. */
+	public long getHitCount () {
+		return hits.get();
+	}
+
+	/** Returns the number of verifications passed on to the delegate. */
+	public long getMissCount () {
+		return misses.get();
+	}
+
+	/** Returns the number of cached results, including expired ones not evicted yet. */
+	public int size () {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/** Removes all cached results, e.g. after changing the delegate's configuration. */
+	public void invalidateAll () {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private VerificationResult lookup (String key) {
+		long now = System.nanoTime();
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (now - entry.expiresAt < 0) {
+					hits.incrementAndGet();
+					return entry.result;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	private void store (String key, VerificationResult result) {
+		if (result.isFallback()) {
+			// the store was not asked: ask again next time
+			return;
+		}
+		long ttl;
+		switch (result.getStatus()) {
+			case VALID: ttl = positiveTtlNanos; break;
+			case INVALID: ttl = negativeTtlNanos; break;
+			default: return;
+		}
+		if (ttl <= 0) {
+			return;
+		}
+		Entry entry = new Entry(result, System.nanoTime() + ttl);
+		synchronized (entries) {
+			entries.put(key, entry);
+			if (entries.size() > maxSize) {
+				// the iterator starts at the least recently used entry
+				entries.remove(entries.keySet().iterator().next());
+			}
+		}
+	}
+
+	private static final class Entry {
+		final VerificationResult result;
+		final long expiresAt;
+
+		Entry (VerificationResult result, long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.badlogic.gdx.pay.server.log.VerificationLoggers;
+
+/** Stops calling a store that keeps failing, so its outage is not made worse by a flood of retries and requests do not pile
+ * up waiting for timeouts.
+ * <p>
+ * The breaker starts {@link State#CLOSED}: calls pass. After a number of consecutive failures it opens: calls are refused
+ * right away. Once the open duration has passed it lets a single trial call through ({@link State#HALF_OPEN}); the
+ * breaker closes if the trial succeeds and opens again if it fails. State changes are logged and reported to the
+ * {@link Listener}s. */
+public final class CircuitBreaker {
+
+	/** The states of a circuit breaker. */
+	public enum State {
+		/** Calls pass. */
+		CLOSED,
+		/** Calls are refused. */
+		OPEN,
+		/** A single trial call passes to find out whether the store has recovered. */
+		HALF_OPEN;
+	}
+
+	/** Observes state changes, e.g. to raise an alert while a store is unavailable. */
+	public interface Listener {
+		/** Called after the breaker changed its state, on the thread that caused the change. */
+		void onStateChange (CircuitBreaker breaker, State from, State to);
+	}
+
+	private final String name;
+	private final int failureThreshold;
+	private final long openNanos;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private volatile State state = State.CLOSED;
+	private volatile int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInFlight;
+
+	/** @param name The name reported in log messages, e.g. the store name.
+	 * @param failureThreshold The number of consecutive failures that open the breaker.
+	 * @param openDuration How long the breaker stays open before it lets a trial call through.
+	 * @param unit The unit of the open duration. */
+	public CircuitBreaker (String name, int failureThreshold, long openDuration, TimeUnit unit) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException("failureThreshold must be at least 1: " + failureThreshold);
+		}
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.openNanos = unit.toNanos(openDuration);
+	}
+
+	public String getName () {
+		return name;
+	}
+
+	public State getState () {
+		return state;
+	}
+
+	public void addListener (Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener (Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/** Returns true if a call may be made now. Every permitted call must be followed by {@link #onSuccess()},
+	 * {@link #onFailure()} or {@link #release()}. */
+	public boolean tryAcquire () {
+		if (state == State.CLOSED) {
+			return true;
+		}
+		State from;
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				return true;
+			}
+			if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+				from = state;
+				state = State.HALF_OPEN;
+			} else if (state == State.HALF_OPEN && !trialInFlight) {
+				from = null;
+			} else {
+				return false;
+			}
+			trialInFlight = true;
+		}
+		if (from != null) {
+			notify(from, State.HALF_OPEN);
+		}
+		return true;
+	}
+
+	/** Reports that a permitted call reached the store. */
+	public void onSuccess () {
+		if (state == State.CLOSED && consecutiveFailures == 0) {
+			return;
+		}
+		State from;
+		synchronized (this) {
+			consecutiveFailures = 0;
+			trialInFlight = false;
+			from = state;
+			state = State.CLOSED;
+		}
+		if (from != State.CLOSED) {
+			notify(from, State.CLOSED);
+		}
+	}
+
+	/** Reports that a permitted call ended without telling anything about the store, e.g. because the verifier threw on a
+	 * malformed transaction before asking the store. The state does not change; a trial call of the half-open state may be
+	 * made again. */
+	public void release () {
+		if (state == State.CLOSED) {
+			return;
+		}
+		synchronized (this) {
+			trialInFlight = false;
+		}
+	}
+
+	/** Reports that a permitted call failed for a transient reason. */
+	public void onFailure () {
+		State from;
+		synchronized (this) {
+			from = state;
+			trialInFlight = false;
+			if (from == State.OPEN || (from == State.CLOSED && ++consecutiveFailures < failureThreshold)) {
+				return;
+			}
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+		}
+		notify(from, State.OPEN);
+	}
+
+	private void notify (State from, State to) {
+		VerificationLoggers.getDefault().log("Circuit breaker " + name + ": " + from + " -> " + to);
+		for (Listener listener : listeners) {
+			listener.onStateChange(this, from, to);
+		}
+	}
+
+	@Override
+	public String toString () {
+		return "CircuitBreaker{" +
+				"name='" + name + '\'' +
+				", state=" + state +
+				'}';
+	}
+}
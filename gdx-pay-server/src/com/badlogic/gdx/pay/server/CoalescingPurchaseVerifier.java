@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.gdx.pay.Transaction;
+
+/** Lets concurrent verifications of the same transaction share a single verification by another verifier ("single
+ * flight"). When a user restores purchases on two devices at once or a gateway retries a request, only the first
+ * verification goes to the store; the others wait for and get its result.
+ *
+ * <pre>
+ * verifier.addVerifier(new CoalescingPurchaseVerifier(new PurchaseVerifieriOSApple()));
+ * </pre>
+ *
+ * Transactions are identical if all fields a verifier reads are (store name, product, order and request ids, data and
+ * signature), see {@link CachingPurchaseVerifier}.
+ * Unlike a cache, only verifications that overlap in time are shared; combine both to also answer later repetitions. */
+public class CoalescingPurchaseVerifier implements PurchaseVerifier {
+
+	private final PurchaseVerifier delegate;
+
+	/** The verifications in flight by transaction key. */
+	private final ConcurrentMap<String, CompletableFuture<VerificationResult>> inFlight =
+		new ConcurrentHashMap<String, CompletableFuture<VerificationResult>>();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/** @param delegate The verifier doing the actual verification. */
+	public CoalescingPurchaseVerifier (PurchaseVerifier delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String storeName () {
+		return delegate.storeName();
+	}
+
+	@Override
+	public boolean isValid (Transaction transaction) {
+		return verify(transaction).isValid();
+	}
+
+	@Override
+	public VerificationResult verify (Transaction transaction) {
+		String key = TransactionKeys.of(transaction);
+		CompletableFuture<VerificationResult> flight = new CompletableFuture<VerificationResult>();
+		CompletableFuture<VerificationResult> running = inFlight.putIfAbsent(key, flight);
+		if (running != null) {
+			coalesced.incrementAndGet();
+			return await(running);
+		}
+		try {
+			VerificationResult result = delegate.verify(transaction);
+			flight.complete(result);
+			return result;
+		} catch (Throwable e) {
+			// also errors: callers waiting for the flight must not wait forever
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	@Override
+	public CompletionStage<VerificationResult> isValidAsync (Transaction transaction, Executor executor) {
+		final String key = TransactionKeys.of(transaction);
+		final CompletableFuture<VerificationResult> flight = new CompletableFuture<VerificationResult>();
+		CompletableFuture<VerificationResult> running = inFlight.putIfAbsent(key, flight);
+		if (running != null) {
+			coalesced.incrementAndGet();
+			// a dependent stage, so callers cannot complete the shared one
+			return running.thenApply(result -> result);
+		}
+		try {
+			delegate.isValidAsync(transaction, executor).whenComplete((result, error) -> {
+				inFlight.remove(key, flight);
+				if (error != null) {
+					flight.completeExceptionally(error);
+				} else {
+					flight.complete(result);
+				}
+			});
+		} catch (Throwable e) {
+			inFlight.remove(key, flight);
+			flight.completeExceptionally(e);
+			throw e;
+		}
+		return flight.thenApply(result -> result);
+	}
+
+	/** Verifies the transactions not already in flight with one call to the verifier and waits for the others. */
+	@Override
+	public List<VerificationResult> verifyBatch (List<Transaction> transactions) {
+		int size = transactions.size();
+		List<CompletableFuture<VerificationResult>> flights = new ArrayList<CompletableFuture<VerificationResult>>(size);
+		List<Transaction> own = new ArrayList<Transaction>();
+		List<String> ownKeys = new ArrayList<String>();
+		List<CompletableFuture<VerificationResult>> ownFlights = new ArrayList<CompletableFuture<VerificationResult>>();
+		for (Transaction transaction : transactions) {
+			String key = TransactionKeys.of(transaction);
+			CompletableFuture<VerificationResult> flight = new CompletableFuture<VerificationResult>();
+			CompletableFuture<VerificationResult> running = inFlight.putIfAbsent(key, flight);
+			if (running != null) {
+				coalesced.incrementAndGet();
+				flight = running;
+			} else {
+				own.add(transaction);
+				ownKeys.add(key);
+				ownFlights.add(flight);
+			}
+			flights.add(flight);
+		}
+
+		if (!own.isEmpty()) {
+			try {
+				List<VerificationResult> verified = delegate.verifyBatch(own);
+				for (int i = 0; i < own.size(); i++) {
+					ownFlights.get(i).complete(verified.get(i));
+				}
+			} catch (Throwable e) {
+				for (CompletableFuture<VerificationResult> flight : ownFlights) {
+					flight.completeExceptionally(e);
+				}
+				throw e;
+			} finally {
+				for (int i = 0; i < own.size(); i++) {
+					inFlight.remove(ownKeys.get(i), ownFlights.get(i));
+				}
+			}
+		}
+
+		List<VerificationResult> results = new ArrayList<VerificationResult>(size);
+		for (CompletableFuture<VerificationResult> flight : flights) {
+			results.add(await(flight));
+		}
+		return results;
+	}
+
+	/** Returns the number of verifications that shared the result of another one instead of calling the verifier. */
+	public long getCoalescedCount () {
+		return coalesced.get();
+	}
+
+	/** Returns the number of verifications currently in flight. */
+	public int getInFlightCount () {
+		return inFlight.size();
+	}
+
+	private static VerificationResult await (CompletableFuture<VerificationResult> flight) {
+		try {
+			return flight.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			if (e.getCause() instanceof Error) throw (Error)e.getCause();
+			throw e;
+		}
+	}
+}
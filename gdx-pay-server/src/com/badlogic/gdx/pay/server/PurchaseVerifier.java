@@ -16,9 +16,21 @@
 
 package com.badlogic.gdx.pay.server;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.util.VerificationExecutors;
 
 /** Verifies if a purchase is valid by e.g. doing a post-back validation to a server or doing a public/private-key validation.
+ * <p>
+ * Implementations must provide {@link #isValid(Transaction)}. Verifiers that can tell transient failures from invalid
+ * transactions should also override {@link #verify(Transaction)} and implement {@link #isValid(Transaction)} as
+ * {@code verify(transaction).isValid()}.
  * 
  * @author noblemaster */
 public interface PurchaseVerifier {
@@ -28,4 +40,51 @@ public interface PurchaseVerifier {
 
 	/** Returns true if the transaction was determined valid. */
 	boolean isValid(Transaction transaction);
+
+	/** Verifies the transaction. The default implementation adapts {@link #isValid(Transaction)}, so it never reports
+	 * {@link VerificationResult.Status#RETRYABLE} or {@link VerificationResult.Status#UNSUPPORTED}.
+	 * 
+	 * @param transaction The transaction to verify.
+	 * @return The verification result. */
+	default VerificationResult verify(Transaction transaction) {
+		return VerificationResult.of(isValid(transaction));
+	}
+
+	/** Verifies the transaction without blocking the caller, using the executor shared by all verifiers.
+	 * 
+	 * @see VerificationExecutors#shared() */
+	default CompletionStage<VerificationResult> isValidAsync(Transaction transaction) {
+		return isValidAsync(transaction, VerificationExecutors.shared());
+	}
+
+	/** Verifies the transaction without blocking the caller. The default implementation runs {@link #verify(Transaction)}
+	 * on the given executor; verifiers with a natively asynchronous transport may override this.
+	 * 
+	 * @param transaction The transaction to verify.
+	 * @param executor The executor to run blocking verification work on.
+	 * @return The verification result once available. Fails with a {@link RejectedExecutionException} if the executor has
+	 *         no capacity left. */
+	default CompletionStage<VerificationResult> isValidAsync(final Transaction transaction, Executor executor) {
+		try {
+			return CompletableFuture.supplyAsync(() -> verify(transaction), executor);
+		} catch (RejectedExecutionException e) {
+			CompletableFuture<VerificationResult> rejected = new CompletableFuture<VerificationResult>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+	}
+
+	/** Verifies several transactions of this verifier's store at once. The default implementation calls
+	 * {@link #verify(Transaction)} for each transaction; verifiers may override this to share expensive setup (keys,
+	 * signature engines, connections) across the batch.
+	 * 
+	 * @param transactions The transactions to verify, all for {@link #storeName()}.
+	 * @return The results in the same order as the transactions. */
+	default List<VerificationResult> verifyBatch(List<Transaction> transactions) {
+		List<VerificationResult> results = new ArrayList<VerificationResult>(transactions.size());
+		for (Transaction transaction : transactions) {
+			results.add(verify(transaction));
+		}
+		return results;
+	}
 }
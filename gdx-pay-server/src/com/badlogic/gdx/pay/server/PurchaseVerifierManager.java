@@ -16,10 +16,23 @@
 
 package com.badlogic.gdx.pay.server;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.metrics.VerificationMetrics;
+import com.badlogic.gdx.pay.server.util.VerificationExecutors;
 
 /** Verifies if a purchase is valid by e.g. doing a post-back validation on a server.
  * 
@@ -42,8 +55,22 @@ import com.badlogic.gdx.pay.Transaction;
  *   // transaction appears bogus
  *   ... punish user ...
  * }
+ * 
+ * // or verify without blocking the calling thread
+ * verifier.isValidAsync(transaction).thenAccept(result -> {
+ *   ...
+ * });
  * </pre>
  * 
+ * Verifiers can be added, replaced and removed at any time, also while verifications are running, e.g. to rotate a
+ * store's keys or shared secret with {@link #replaceVerifier(PurchaseVerifier)}.
+ * 
+ * Give a store a {@link Bulkhead} with {@link #setBulkhead(String, Bulkhead)} to limit its concurrent verifications, so a
+ * slow remote store cannot hold up the verifications of the others.
+ * 
+ * Set {@link VerificationMetrics} with {@link #setMetrics(VerificationMetrics)} to count the outcomes and measure the latency
+ * of the verifications per store.
+ * 
  * IMPORTANT: this code runs on your SERVER! Don't use on your client-application (not secure).
  * 
  * @author noblemaster */
@@ -52,8 +79,17 @@ public class PurchaseVerifierManager {
 	/** Default if no verifier was found for a store. */
 	private boolean defaultIfNoVerifierFound;
 
-	/** The verifier implementations. */
-	private Map<String, PurchaseVerifier> verifiers;
+	/** The verifier implementations. Read without locking on every verification. */
+	private final ConcurrentMap<String, PurchaseVerifier> verifiers;
+
+	/** The bulkheads by store name. */
+	private final ConcurrentMap<String, Bulkhead> bulkheads;
+
+	/** The executor for asynchronous verifications or null for the shared default. */
+	private volatile Executor executor;
+
+	/** Receives the outcome of every verification. */
+	private volatile VerificationMetrics metrics = VerificationMetrics.NONE;
 
 	public PurchaseVerifierManager () {
 		this(false);
@@ -61,15 +97,95 @@ public class PurchaseVerifierManager {
 
 	public PurchaseVerifierManager (boolean defaultIfNoVerifierFound) {
 		this.defaultIfNoVerifierFound = defaultIfNoVerifierFound;
-		this.verifiers = new HashMap<String, PurchaseVerifier>(16);
+		this.verifiers = new ConcurrentHashMap<String, PurchaseVerifier>(16);
+		this.bulkheads = new ConcurrentHashMap<String, Bulkhead>(16);
 	}
 
+	/** Adds a verifier, replacing the verifier of the same store if there is one. */
 	public void addVerifier (PurchaseVerifier verifier) {
 		verifiers.put(verifier.storeName(), verifier);
 	}
 
+	/** Removes a verifier. Nothing happens if the verifier has been replaced in the meantime. */
 	public void removeVerifier (PurchaseVerifier verifier) {
-		verifiers.remove(verifier.storeName());
+		verifiers.remove(verifier.storeName(), verifier);
+	}
+
+	/** Atomically replaces the verifier of a store, e.g. after rotating its keys. Verifications already running finish with
+	 * the previous verifier, all verifications starting afterwards use the new one.
+	 * 
+	 * @param verifier The new verifier.
+	 * @return The previous verifier of the store or null. */
+	public PurchaseVerifier replaceVerifier (PurchaseVerifier verifier) {
+		return verifiers.put(verifier.storeName(), verifier);
+	}
+
+	/** Atomically replaces the verifier of a store only if it is still the expected one, so concurrent updates (e.g. two
+	 * key rotations) cannot overwrite each other.
+	 * 
+	 * @param expected The verifier expected to be registered for the store.
+	 * @param verifier The new verifier, for the same store.
+	 * @return True if the verifier was replaced. */
+	public boolean replaceVerifier (PurchaseVerifier expected, PurchaseVerifier verifier) {
+		if (!expected.storeName().equals(verifier.storeName())) {
+			throw new IllegalArgumentException("Verifiers are for different stores: " + expected.storeName() + ", "
+				+ verifier.storeName());
+		}
+		return verifiers.replace(verifier.storeName(), expected, verifier);
+	}
+
+	/** Returns the verifier of a store or null if there is none. */
+	public PurchaseVerifier getVerifier (String storeName) {
+		return verifier(storeName);
+	}
+
+	/** Limits the concurrent verifications of a store. Synchronous verifications wait for a permit on the calling thread,
+	 * asynchronous ones and the store's group in {@link #verifyAll(Collection)} are queued. Rejected verifications are
+	 * {@link VerificationResult.Status#RETRYABLE} (false for {@link #isValid(Transaction)}) unless the bulkhead's
+	 * {@link Bulkhead.RejectionPolicy} runs them on the calling thread.
+	 * <p>
+	 * A verifier overriding {@link PurchaseVerifier#isValidAsync(Transaction, Executor)} with a natively asynchronous
+	 * transport is only limited for the work it runs on the given executor.
+	 * 
+	 * @param storeName The store, e.g. {@link com.badlogic.gdx.pay.PurchaseManagerConfig#STORE_NAME_IOS_APPLE}.
+	 * @param bulkhead The bulkhead or null to not limit the store's verifications. */
+	public void setBulkhead (String storeName, Bulkhead bulkhead) {
+		if (bulkhead == null) {
+			bulkheads.remove(storeName);
+		} else {
+			bulkheads.put(storeName, bulkhead);
+		}
+	}
+
+	/** Returns the bulkhead of a store or null if its verifications are not limited. */
+	public Bulkhead getBulkhead (String storeName) {
+		return bulkhead(storeName);
+	}
+
+	/** Sets the executor used by {@link #isValidAsync(Transaction)}. Verifications the executor rejects are
+	 * {@link VerificationResult.Status#RETRYABLE}.
+	 * 
+	 * @param executor The executor or null to use {@link VerificationExecutors#shared()}. */
+	public void setExecutor (Executor executor) {
+		this.executor = executor;
+	}
+
+	/** Returns the executor used by {@link #isValidAsync(Transaction)}. */
+	public Executor getExecutor () {
+		Executor executor = this.executor;
+		return executor != null ? executor : VerificationExecutors.shared();
+	}
+
+	/** Sets the metrics receiving the outcome and latency of every verification of a store with a verifier.
+	 * 
+	 * @param metrics The metrics, e.g. {@link com.badlogic.gdx.pay.server.metrics.InMemoryVerificationMetrics}, or null to
+	 *           not record any. */
+	public void setMetrics (VerificationMetrics metrics) {
+		this.metrics = metrics != null ? metrics : VerificationMetrics.NONE;
+	}
+
+	public VerificationMetrics getMetrics () {
+		return metrics;
 	}
 
 	/** Returns true if a transaction is deemed valid.
@@ -80,11 +196,228 @@ public class PurchaseVerifierManager {
 	 * @return True for considered valid. */
 	public boolean isValid (Transaction transaction) {
 		// find the verifier and verify via verifier if a purchase is valid
-		PurchaseVerifier verifier = verifiers.get(transaction.getStoreName());
+		PurchaseVerifier verifier = verifier(transaction.getStoreName());
 		if (verifier == null) {
 			return defaultIfNoVerifierFound;
+		}
+		long start = System.nanoTime();
+		Bulkhead bulkhead = bulkhead(transaction.getStoreName());
+		try {
+			VerificationResult result = bulkhead == null ? verifier.verify(transaction)
+				: bulkhead.call(() -> verifier.verify(transaction), () -> rejectedResult(verifier.storeName()));
+			record(verifier.storeName(), withLatency(result, start));
+			return result.isValid();
+		} catch (RuntimeException e) {
+			metrics.recordFailure(verifier.storeName(), e, System.nanoTime() - start);
+			throw e;
+		}
+	}
+
+	/** Verifies a transaction and reports why it failed, e.g. to retry transient failures later. The result's latency is
+	 * filled in if the verifier did not measure it.
+	 * <p>
+	 * IMPORTANT: if no verifier was found for the given transaction, the result is valid if "defaultIfNoVerifierFound" is
+	 * set and {@link VerificationResult.Status#UNSUPPORTED} otherwise.
+	 * 
+	 * @param transaction The transaction to verify.
+	 * @return The verification result. */
+	public VerificationResult verify (Transaction transaction) {
+		PurchaseVerifier verifier = verifier(transaction.getStoreName());
+		if (verifier == null) {
+			return noVerifierResult();
+		}
+		long start = System.nanoTime();
+		Bulkhead bulkhead = bulkhead(transaction.getStoreName());
+		VerificationResult result;
+		try {
+			if (bulkhead == null) {
+				result = verifier.verify(transaction);
+			} else {
+				result = bulkhead.call(() -> verifier.verify(transaction), () -> rejectedResult(verifier.storeName()));
+			}
+		} catch (RuntimeException e) {
+			metrics.recordFailure(verifier.storeName(), e, System.nanoTime() - start);
+			throw e;
+		}
+		return record(verifier.storeName(), withLatency(result, start));
+	}
+
+	/** Verifies a transaction without blocking the calling thread.
+	 * <p>
+	 * IMPORTANT: see {@link #verify(Transaction)} for the result if no verifier was found for the given transaction.
+	 * 
+	 * @param transaction The transaction to verify.
+	 * @return The verification result once available. */
+	public CompletionStage<VerificationResult> isValidAsync (Transaction transaction) {
+		PurchaseVerifier verifier = verifier(transaction.getStoreName());
+		if (verifier == null) {
+			return CompletableFuture.completedFuture(noVerifierResult());
+		}
+		final long start = System.nanoTime();
+		Bulkhead bulkhead = bulkhead(transaction.getStoreName());
+		final String storeName = verifier.storeName();
+		CompletionStage<VerificationResult> verification;
+		try {
+			// a verification queued by the bulkhead and refused by the executor later is answered as rejected
+			final CompletableFuture<VerificationResult> lateRejection = new CompletableFuture<VerificationResult>();
+			Executor executor = bulkhead == null ? getExecutor() : bulkhead.executor(getExecutor(),
+				e -> lateRejection.complete(rejectedResult(storeName)));
+			verification = verifier.isValidAsync(transaction, executor).applyToEither(lateRejection, result -> result);
+		} catch (RejectedExecutionException e) {
+			verification = CompletableFuture.completedFuture(rejectedResult(storeName));
+		}
+		return verification.handle((result, error) -> {
+			if (error != null) {
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				if (cause instanceof RejectedExecutionException) {
+					// the executor had no capacity left
+					return record(storeName, withLatency(rejectedResult(storeName), start));
+				}
+				metrics.recordFailure(storeName, cause, System.nanoTime() - start);
+				throw error instanceof CompletionException ? (CompletionException)error : new CompletionException(error);
+			}
+			return record(storeName, withLatency(result, start));
+		});
+	}
+
+	/** Verifies many transactions at once, e.g. the transactions of a restore. Transactions are grouped by store and each group
+	 * is handed to its verifier's {@link PurchaseVerifier#verifyBatch(List)}. Groups of different stores are verified
+	 * concurrently on {@link #getExecutor()}, so a slow remote store does not hold back the others. A group whose store has a
+	 * {@link Bulkhead} takes one of its permits.
+	 * <p>
+	 * IMPORTANT: see {@link #verify(Transaction)} for the result of transactions without a verifier.
+	 * 
+	 * @param transactions The transactions to verify.
+	 * @return The result for each transaction, in iteration order of the given collection. */
+	public Map<Transaction, VerificationResult> verifyAll (Collection<Transaction> transactions) {
+		// group by store, keeping the order within each group
+		Map<String, List<Transaction>> groups = new LinkedHashMap<String, List<Transaction>>();
+		for (Transaction transaction : transactions) {
+			List<Transaction> group = groups.get(transaction.getStoreName());
+			if (group == null) {
+				group = new ArrayList<Transaction>();
+				groups.put(transaction.getStoreName(), group);
+			}
+			group.add(transaction);
+		}
+
+		// fan out: the last group runs on the calling thread, the others on the executor
+		List<CompletableFuture<List<VerificationResult>>> batches = new ArrayList<CompletableFuture<List<VerificationResult>>>(
+			groups.size());
+		int remaining = groups.size();
+		for (Map.Entry<String, List<Transaction>> entry : groups.entrySet()) {
+			final PurchaseVerifier verifier = verifier(entry.getKey());
+			final List<Transaction> group = entry.getValue();
+			final Bulkhead bulkhead = bulkhead(entry.getKey());
+			if (verifier == null) {
+				batches.add(CompletableFuture.completedFuture(Collections.nCopies(group.size(), noVerifierResult())));
+			} else if (--remaining == 0) {
+				long start = System.nanoTime();
+				batches.add(CompletableFuture.completedFuture(verifyBatch(verifier, bulkhead, group, start)));
+			} else {
+				final long start = System.nanoTime();
+				final String storeName = entry.getKey();
+				// a group queued by the bulkhead and refused by the executor later is answered as rejected
+				final CompletableFuture<List<VerificationResult>> lateRejection = new CompletableFuture<List<VerificationResult>>();
+				Executor executor = bulkhead == null ? getExecutor() : bulkhead.executor(getExecutor(),
+					e -> lateRejection.complete(rejectedBatch(storeName, group, start)));
+				try {
+					batches.add(CompletableFuture.supplyAsync(() -> verifyBatch(verifier, null, group, start), executor)
+						.applyToEither(lateRejection, batch -> batch));
+				} catch (RejectedExecutionException e) {
+					batches.add(CompletableFuture.completedFuture(rejectedBatch(storeName, group, start)));
+				}
+			}
+		}
+
+		// fan in: only the calling thread touches the result map
+		Map<Transaction, VerificationResult> results = new LinkedHashMap<Transaction, VerificationResult>(transactions.size() * 2);
+		for (Transaction transaction : transactions) {
+			results.put(transaction, null);
+		}
+		try {
+			CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+			int i = 0;
+			for (List<Transaction> group : groups.values()) {
+				collect(results, group, batches.get(i++).join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw e;
+		}
+		return results;
+	}
+
+	/** Returns the verifier of a store or null, also for transactions without store name (the map does not take null). */
+	private PurchaseVerifier verifier (String storeName) {
+		return storeName != null ? verifiers.get(storeName) : null;
+	}
+
+	private Bulkhead bulkhead (String storeName) {
+		return storeName != null ? bulkheads.get(storeName) : null;
+	}
+
+	private VerificationResult noVerifierResult () {
+		return defaultIfNoVerifierFound ? VerificationResult.valid() : VerificationResult.unsupported();
+	}
+
+	/** Verifies a group on the calling thread, holding a permit of the bulkhead if there is one, and records the results.
+	 * Results without a latency are attributed an equal share of the batch's time. */
+	private List<VerificationResult> verifyBatch (PurchaseVerifier verifier, Bulkhead bulkhead, List<Transaction> group,
+		long start) {
+		List<VerificationResult> batch;
+		try {
+			if (bulkhead == null) {
+				batch = verifier.verifyBatch(group);
+			} else {
+				batch = bulkhead.call(() -> verifier.verifyBatch(group),
+					() -> Collections.nCopies(group.size(), rejectedResult(verifier.storeName())));
+			}
+		} catch (RuntimeException e) {
+			metrics.recordFailure(verifier.storeName(), e, System.nanoTime() - start);
+			throw e;
+		}
+		long share = (System.nanoTime() - start) / Math.max(1, group.size());
+		VerificationMetrics metrics = this.metrics;
+		for (VerificationResult result : batch) {
+			long latency = result.getLatencyNanos();
+			record(metrics, verifier.storeName(), result, latency != VerificationResult.LATENCY_UNKNOWN ? latency : share);
+		}
+		return batch;
+	}
+
+	private VerificationResult record (String storeName, VerificationResult result) {
+		record(metrics, storeName, result, result.getLatencyNanos());
+		return result;
+	}
+
+	private static void record (VerificationMetrics metrics, String storeName, VerificationResult result, long latencyNanos) {
+		if (result.isFallback()) {
+			metrics.recordFallback(storeName, result.getStatus(), latencyNanos);
 		} else {
-			return verifier.isValid(transaction);
+			metrics.recordResult(storeName, result.getStatus(), latencyNanos);
+		}
+	}
+
+	private List<VerificationResult> rejectedBatch (String storeName, List<Transaction> group, long start) {
+		return Collections.nCopies(group.size(), record(storeName, withLatency(rejectedResult(storeName), start)));
+	}
+
+	private static VerificationResult rejectedResult (String storeName) {
+		return VerificationResult.retryable("Too many concurrent verifications for " + storeName);
+	}
+
+	private static VerificationResult withLatency (VerificationResult result, long start) {
+		if (result.getLatencyNanos() != VerificationResult.LATENCY_UNKNOWN) {
+			return result;
+		}
+		return result.withLatencyNanos(System.nanoTime() - start);
+	}
+
+	private static void collect (Map<Transaction, VerificationResult> results, List<Transaction> group,
+		List<VerificationResult> batch) {
+		for (int i = 0; i < group.size(); i++) {
+			results.put(group.get(i), batch.get(i));
 		}
 	}
 }
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.gdx.pay.Transaction;
+
+/** Retries transient failures of another verifier and guards its store with a {@link CircuitBreaker}.
+ *
+ * <pre>
+ * verifier.addVerifier(ResilientPurchaseVerifier.newBuilder()
+ *   .verifier(new PurchaseVerifieriOSApple())
+ *   .maxAttempts(3)
+ *   .backoff(200, 5000, TimeUnit.MILLISECONDS)
+ *   .circuitBreaker(5, 30, TimeUnit.SECONDS)
+ *   .failurePolicy(ResilientPurchaseVerifier.FailurePolicy.FAIL_CLOSED)
+ *   .build());
+ * </pre>
+ *
+ * A verification is retried while its result is {@link VerificationResult.Status#RETRYABLE} (e.g. Apple's status 21005
+ * or an I/O error), up to the maximum number of attempts. The delay before each retry doubles, up to the maximum backoff,
+ * and is jittered so clients that failed together do not retry together. Asynchronous verifications wait for their
+ * retries without blocking a thread.
+ * <p>
+ * Every attempt with a retryable result counts as a failure for the circuit breaker; while it is open no attempts are
+ * made. A verification that still fails (attempts exhausted or breaker open) is resolved by the {@link FailurePolicy}, and
+ * its result is marked as {@link VerificationResult#isFallback() fallback}.
+ * <p>
+ * An exception thrown by the verifier is not a transient failure: it usually means the transaction is malformed (e.g. a
+ * Google transaction without signature). The transaction is rejected as {@link VerificationResult.Status#INVALID} without
+ * retry, and the exception neither counts for the circuit breaker nor reaches the {@link FailurePolicy}, so malformed
+ * transactions can neither open the breaker nor be accepted by {@link FailurePolicy#FAIL_OPEN}. */
+public class ResilientPurchaseVerifier implements PurchaseVerifier {
+
+	/** How verifications are resolved that could not be completed because of transient failures. */
+	public enum FailurePolicy {
+		/** The result stays {@link VerificationResult.Status#RETRYABLE}: the transaction is not accepted for now. */
+		FAIL_CLOSED,
+		/** The transaction is accepted as {@link VerificationResult.Status#VALID} without verification, with a message saying
+		 * so. Prefer this where rejecting a legitimate purchase costs more than accepting a forged one. Check
+		 * {@link VerificationResult#isFallback()} to verify such transactions again later. */
+		FAIL_OPEN;
+	}
+
+	private final PurchaseVerifier delegate;
+	private final int maxAttempts;
+	private final long initialBackoffNanos;
+	private final long maxBackoffNanos;
+	private final FailurePolicy failurePolicy;
+	private final CircuitBreaker circuitBreaker;
+
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	private ResilientPurchaseVerifier (Builder builder) {
+		delegate = builder.verifier;
+		maxAttempts = builder.maxAttempts;
+		initialBackoffNanos = builder.initialBackoffNanos;
+		maxBackoffNanos = builder.maxBackoffNanos;
+		failurePolicy = builder.failurePolicy;
+		circuitBreaker = new CircuitBreaker(delegate.storeName(), builder.failureThreshold, builder.openNanos,
+			TimeUnit.NANOSECONDS);
+		if (builder.listener != null) {
+			circuitBreaker.addListener(builder.listener);
+		}
+	}
+
+	public static Builder newBuilder () {
+		return new Builder();
+	}
+
+	@Override
+	public String storeName () {
+		return delegate.storeName();
+	}
+
+	@Override
+	public boolean isValid (Transaction transaction) {
+		return verify(transaction).isValid();
+	}
+
+	@Override
+	public VerificationResult verify (Transaction transaction) {
+		return verify(transaction, 1, null);
+	}
+
+	@Override
+	public CompletionStage<VerificationResult> isValidAsync (Transaction transaction, Executor executor) {
+		CompletableFuture<VerificationResult> future = new CompletableFuture<VerificationResult>();
+		attemptAsync(transaction, executor, 1, null, future);
+		return future;
+	}
+
+	/** Verifies the batch with one call to the verifier, which counts as one attempt, and retries the transactions that
+	 * failed transiently one by one.
+	 * <p>
+	 * The batch call is a single call for the circuit breaker: it counts as one failure if any of its results is retryable,
+	 * no matter how many are. The retries are made with {@link #verify(Transaction)}, one after the other, and wait for their
+	 * backoff by sleeping on the calling thread; each retry counts for the breaker on its own.
+	 * <p>
+	 * If the batch call throws, e.g. because one of the transactions is malformed, the transactions are verified one by one
+	 * instead, so that only the faulty ones are rejected. */
+	@Override
+	public List<VerificationResult> verifyBatch (List<Transaction> transactions) {
+		List<VerificationResult> results = new ArrayList<VerificationResult>(transactions.size());
+		if (!circuitBreaker.tryAcquire()) {
+			for (int i = 0; i < transactions.size(); i++) {
+				results.add(fallback(null));
+			}
+			return results;
+		}
+		try {
+			results.addAll(delegate.verifyBatch(transactions));
+		} catch (RuntimeException e) {
+			circuitBreaker.release();
+			results.clear();
+			for (Transaction transaction : transactions) {
+				results.add(verify(transaction, 1, null));
+			}
+			return results;
+		} catch (Error e) {
+			circuitBreaker.release();
+			throw e;
+		}
+		boolean failed = false;
+		for (VerificationResult result : results) {
+			failed |= result.isRetryable();
+		}
+		if (failed) {
+			circuitBreaker.onFailure();
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i).isRetryable()) {
+					results.set(i, verify(transactions.get(i), 2, results.get(i)));
+				}
+			}
+		} else {
+			circuitBreaker.onSuccess();
+		}
+		return results;
+	}
+
+	/** Returns the circuit breaker guarding the store, e.g. to observe its state. */
+	public CircuitBreaker getCircuitBreaker () {
+		return circuitBreaker;
+	}
+
+	/** Returns the number of retries made. */
+	public long getRetryCount () {
+		return retries.get();
+	}
+
+	/** Returns the number of verifications resolved by the {@link FailurePolicy}. */
+	public long getFallbackCount () {
+		return fallbacks.get();
+	}
+
+	private VerificationResult verify (Transaction transaction, int attempt, VerificationResult last) {
+		for (;; attempt++) {
+			if (attempt > 1) {
+				if (attempt > maxAttempts || !sleep(backoffNanos(attempt - 1))) {
+					return fallback(last);
+				}
+				retries.incrementAndGet();
+			}
+			if (!circuitBreaker.tryAcquire()) {
+				return fallback(last);
+			}
+			VerificationResult result;
+			try {
+				result = delegate.verify(transaction);
+			} catch (RuntimeException e) {
+				circuitBreaker.release();
+				return rejected(e);
+			} catch (Error e) {
+				circuitBreaker.release();
+				throw e;
+			}
+			if (!result.isRetryable()) {
+				circuitBreaker.onSuccess();
+				return result;
+			}
+			circuitBreaker.onFailure();
+			last = result;
+		}
+	}
+
+	private void attemptAsync (final Transaction transaction, final Executor executor, final int attempt,
+		VerificationResult last, final CompletableFuture<VerificationResult> future) {
+		if (!circuitBreaker.tryAcquire()) {
+			future.complete(fallback(last));
+			return;
+		}
+		CompletionStage<VerificationResult> stage;
+		try {
+			stage = delegate.isValidAsync(transaction, executor);
+		} catch (RejectedExecutionException e) {
+			// no capacity to verify: let the caller decide, like for any executor
+			circuitBreaker.release();
+			if (attempt == 1) {
+				throw e;
+			}
+			future.completeExceptionally(e);
+			return;
+		} catch (Error e) {
+			circuitBreaker.release();
+			throw e;
+		} catch (RuntimeException e) {
+			CompletableFuture<VerificationResult> failed = new CompletableFuture<VerificationResult>();
+			failed.completeExceptionally(e);
+			stage = failed;
+		}
+		stage.whenComplete((result, error) -> {
+			if (error != null) {
+				circuitBreaker.release();
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				if (cause instanceof RejectedExecutionException) {
+					// no capacity to verify: not the transaction's fault
+					future.completeExceptionally(cause);
+				} else {
+					future.complete(rejected(error));
+				}
+				return;
+			}
+			VerificationResult outcome = result;
+			if (!outcome.isRetryable()) {
+				circuitBreaker.onSuccess();
+				future.complete(outcome);
+				return;
+			}
+			circuitBreaker.onFailure();
+			if (attempt >= maxAttempts) {
+				future.complete(fallback(outcome));
+				return;
+			}
+			retries.incrementAndGet();
+			RetryScheduler.EXECUTOR.schedule(() -> attemptAsync(transaction, executor, attempt + 1, outcome, future),
+				backoffNanos(attempt), TimeUnit.NANOSECONDS);
+		});
+	}
+
+	/** Returns the delay before the given retry: exponential, with "equal jitter" (half fixed, half random). */
+	private long backoffNanos (int retry) {
+		long backoff = initialBackoffNanos << Math.min(retry - 1, 30);
+		if (backoff <= 0 || backoff > maxBackoffNanos) {
+			backoff = maxBackoffNanos;
+		}
+		long half = backoff / 2;
+		return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+	}
+
+	private VerificationResult fallback (VerificationResult last) {
+		fallbacks.incrementAndGet();
+		if (last == null) {
+			last = VerificationResult.retryable("Circuit breaker open for " + storeName());
+		}
+		if (failurePolicy == FailurePolicy.FAIL_CLOSED) {
+			return last.toBuilder().fallback(true).build();
+		}
+		return last.toBuilder()
+			.status(VerificationResult.Status.VALID)
+			.message("Accepted without verification: " + last.getMessage())
+			.fallback(true)
+			.build();
+	}
+
+	/** The result for a verifier that threw: the transaction could not be verified, but not because of the store. */
+	private static VerificationResult rejected (Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		}
+		return VerificationResult.newBuilder()
+			.status(VerificationResult.Status.INVALID)
+			.message("Verification failed: " + error)
+			.build();
+	}
+
+	private static boolean sleep (long nanos) {
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static final class RetryScheduler {
+		static final ScheduledExecutorService EXECUTOR;
+
+		static {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "gdx-pay-retry");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setRemoveOnCancelPolicy(true);
+			EXECUTOR = executor;
+		}
+	}
+
+	public static final class Builder {
+		private PurchaseVerifier verifier;
+		private int maxAttempts = 3;
+		private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(200);
+		private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(5);
+		private int failureThreshold = 5;
+		private long openNanos = TimeUnit.SECONDS.toNanos(30);
+		private FailurePolicy failurePolicy = FailurePolicy.FAIL_CLOSED;
+		private CircuitBreaker.Listener listener;
+
+		private Builder () {
+		}
+
+		/** The verifier doing the actual verification. Required. */
+		public Builder verifier (PurchaseVerifier val) {
+			verifier = val;
+			return this;
+		}
+
+		/** The maximum number of attempts per verification, 1 to not retry. Default 3. */
+		public Builder maxAttempts (int val) {
+			if (val < 1) {
+				throw new IllegalArgumentException("maxAttempts must be at least 1: " + val);
+			}
+			maxAttempts = val;
+			return this;
+		}
+
+		/** The delay before the first retry and the maximum delay. Default 200 ms and 5 s. */
+		public Builder backoff (long initial, long max, TimeUnit unit) {
+			initialBackoffNanos = unit.toNanos(initial);
+			maxBackoffNanos = unit.toNanos(max);
+			return this;
+		}
+
+		/** The number of consecutive failures that open the circuit breaker and how long it stays open. Default 5 failures
+		 * and 30 seconds. */
+		public Builder circuitBreaker (int failureThreshold, long openDuration, TimeUnit unit) {
+			this.failureThreshold = failureThreshold;
+			this.openNanos = unit.toNanos(openDuration);
+			return this;
+		}
+
+		/** How verifications are resolved that failed transiently. Default {@link FailurePolicy#FAIL_CLOSED}. */
+		public Builder failurePolicy (FailurePolicy val) {
+			failurePolicy = val;
+			return this;
+		}
+
+		/** Observes the state changes of the circuit breaker. */
+		public Builder listener (CircuitBreaker.Listener val) {
+			listener = val;
+			return this;
+		}
+
+		public ResilientPurchaseVerifier build () {
+			if (verifier == null) {
+				throw new IllegalStateException("verifier is required");
+			}
+			return new ResilientPurchaseVerifier(this);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+
+/** Keys identifying identical verifications. */
+final class TransactionKeys {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Returns a key of the store name and a SHA-256 digest of every field a verifier reads: product identifier, order id,
+	 * request id (e.g. the Google Play purchase token), user id, transaction data and signature. Transactions differing in
+	 * any of them never share a key, so a tampered transaction never gets the key of the original. */
+	static String of (Transaction transaction) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+		update(digest, transaction.getIdentifier());
+		update(digest, transaction.getOrderId());
+		update(digest, transaction.getRequestId());
+		update(digest, transaction.getUserId());
+		update(digest, transaction.getTransactionData());
+		update(digest, transaction.getTransactionDataSignature());
+		return transaction.getStoreName() + '\n' + new String(Base64Util.encode(digest.digest()));
+	}
+
+	/** Adds a field, prefixed with its length so neighbouring fields cannot be shifted into each other. */
+	private static void update (MessageDigest digest, String field) {
+		if (field == null) {
+			digest.update((byte)0);
+			return;
+		}
+		byte[] bytes = field.getBytes(UTF_8);
+		digest.update((byte)1);
+		digest.update((byte)(bytes.length >>> 24));
+		digest.update((byte)(bytes.length >>> 16));
+		digest.update((byte)(bytes.length >>> 8));
+		digest.update((byte)bytes.length);
+		digest.update(bytes);
+	}
+
+	// Dummy constructor.
+	private TransactionKeys () {
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The outcome of verifying a transaction. Besides valid/invalid it tells transient failures (worth retrying later) apart from
+ * permanent ones, and carries what the store reported: its error code and, where available, the verified claims. */
+public final class VerificationResult {
+
+	/** Latency value if the latency was not measured. */
+	public static final long LATENCY_UNKNOWN = -1;
+
+	/** The verification outcome. */
+	public enum Status {
+		/** The transaction was determined valid. */
+		VALID,
+		/** The transaction was determined invalid, e.g. forged, malformed or revoked. Retrying will not help. */
+		INVALID,
+		/** The transaction could not be verified right now, e.g. the store was unavailable or an I/O error occurred. The
+		 * verification can be retried later. */
+		RETRYABLE,
+		/** The transaction cannot be verified by this verifier, e.g. because it is not configured for it. */
+		UNSUPPORTED;
+	}
+
+	private static final VerificationResult VALID = newBuilder().status(Status.VALID).build();
+	private static final VerificationResult INVALID = newBuilder().status(Status.INVALID).build();
+	private static final VerificationResult UNSUPPORTED = newBuilder().status(Status.UNSUPPORTED).build();
+
+	private final Status status;
+	private final Integer errorCode;
+	private final String message;
+	private final long latencyNanos;
+	private final Map<String, Object> claims;
+	private final boolean fallback;
+
+	private VerificationResult (Builder builder) {
+		status = builder.status;
+		errorCode = builder.errorCode;
+		message = builder.message;
+		latencyNanos = builder.latencyNanos;
+		claims = builder.claims == null ? Collections.<String, Object>emptyMap()
+			: Collections.unmodifiableMap(new LinkedHashMap<String, Object>(builder.claims));
+		fallback = builder.fallback;
+	}
+
+	public static Builder newBuilder () {
+		return new Builder();
+	}
+
+	/** Returns the result for a valid transaction. */
+	public static VerificationResult valid () {
+		return VALID;
+	}
+
+	/** Returns the result for an invalid transaction. */
+	public static VerificationResult invalid () {
+		return INVALID;
+	}
+
+	/** Returns the result for a transaction that could not be verified right now.
+	 * @param message What went wrong. */
+	public static VerificationResult retryable (String message) {
+		return newBuilder().status(Status.RETRYABLE).message(message).build();
+	}
+
+	/** Returns the result for a transaction the verifier cannot verify. */
+	public static VerificationResult unsupported () {
+		return UNSUPPORTED;
+	}
+
+	/** Returns the result matching a boolean as returned by {@link PurchaseVerifier#isValid}. */
+	public static VerificationResult of (boolean valid) {
+		return valid ? VALID : INVALID;
+	}
+
+	public Status getStatus () {
+		return status;
+	}
+
+	/** Returns true if the transaction was determined valid. */
+	public boolean isValid () {
+		return status == Status.VALID;
+	}
+
+	/** Returns true if the verification failed for a transient reason and may be retried. */
+	public boolean isRetryable () {
+		return status == Status.RETRYABLE;
+	}
+
+	/** Returns the status or error code reported by the store (e.g. 21005 for Apple), or null if there was none. */
+	public Integer getErrorCode () {
+		return errorCode;
+	}
+
+	/** Returns a human readable description of the outcome or null. */
+	public String getMessage () {
+		return message;
+	}
+
+	/** Returns how long the verification took in nanoseconds, or {@link #LATENCY_UNKNOWN}. */
+	public long getLatencyNanos () {
+		return latencyNanos;
+	}
+
+	/** Returns the claims the store reported for the transaction (e.g. the payload of a StoreKit 2 JWS). Empty if the
+	 * verifier does not provide any. */
+	public Map<String, Object> getClaims () {
+		return claims;
+	}
+
+	/** Returns true if the store could not be asked and the result was decided by a fallback instead, e.g. a transaction
+	 * accepted without verification by {@link ResilientPurchaseVerifier.FailurePolicy#FAIL_OPEN}. Such results must not be
+	 * cached or counted like verified ones. */
+	public boolean isFallback () {
+		return fallback;
+	}
+
+	/** Returns a copy of this result with the given latency. */
+	public VerificationResult withLatencyNanos (long latencyNanos) {
+		return toBuilder().latencyNanos(latencyNanos).build();
+	}
+
+	/** Returns a builder initialized with the values of this result. */
+	public Builder toBuilder () {
+		return newBuilder()
+			.status(status)
+			.errorCode(errorCode)
+			.message(message)
+			.latencyNanos(latencyNanos)
+			.claims(claims)
+			.fallback(fallback);
+	}
+
+	@Override
+	public String toString () {
+		return "VerificationResult{" +
+				"status=" + status +
+				", errorCode=" + errorCode +
+				", message='" + message + '\'' +
+				", latencyNanos=" + latencyNanos +
+				", claims=" + claims +
+				", fallback=" + fallback +
+				'}';
+	}
+
+	public static final class Builder {
+		private Status status = Status.INVALID;
+		private Integer errorCode;
+		private String message;
+		private long latencyNanos = LATENCY_UNKNOWN;
+		private Map<String, Object> claims;
+		private boolean fallback;
+
+		private Builder () {
+		}
+
+		public Builder status (Status val) {
+			status = val;
+			return this;
+		}
+
+		public Builder errorCode (Integer val) {
+			errorCode = val;
+			return this;
+		}
+
+		public Builder message (String val) {
+			message = val;
+			return this;
+		}
+
+		public Builder latencyNanos (long val) {
+			latencyNanos = val;
+			return this;
+		}
+
+		public Builder claims (Map<String, Object> val) {
+			claims = val;
+			return this;
+		}
+
+		public Builder fallback (boolean val) {
+			fallback = val;
+			return this;
+		}
+
+		public VerificationResult build () {
+			return new VerificationResult(this);
+		}
+	}
+}
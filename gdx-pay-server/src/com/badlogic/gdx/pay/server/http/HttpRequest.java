@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.http;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** An HTTP request sent through a {@link HttpTransport}. */
+public final class HttpRequest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final String method;
+	private final String url;
+	private final Map<String, String> headers;
+	private final byte[] body;
+
+	private HttpRequest (Builder builder) {
+		method = builder.method;
+		url = builder.url;
+		headers = Collections.unmodifiableMap(new LinkedHashMap<String, String>(builder.headers));
+		body = builder.body;
+	}
+
+	public static Builder newBuilder () {
+		return new Builder();
+	}
+
+	/** Returns a POST request with a JSON body. */
+	public static HttpRequest postJson (String url, String json) {
+		return newBuilder()
+			.method("POST")
+			.url(url)
+			.header("Content-Type", "application/json")
+			.header("Accept", "application/json")
+			.body(json.getBytes(UTF_8))
+			.build();
+	}
+
+	public String getMethod () {
+		return method;
+	}
+
+	public String getUrl () {
+		return url;
+	}
+
+	public Map<String, String> getHeaders () {
+		return headers;
+	}
+
+	/** Returns the request body or null if there is none. */
+	public byte[] getBody () {
+		return body;
+	}
+
+	@Override
+	public String toString () {
+		return "HttpRequest{" +
+				"method='" + method + '\'' +
+				", url='" + url + '\'' +
+				'}';
+	}
+
+	public static final class Builder {
+		private String method = "GET";
+		private String url;
+		private final Map<String, String> headers = new LinkedHashMap<String, String>();
+		private byte[] body;
+
+		private Builder () {
+		}
+
+		public Builder method (String val) {
+			method = val;
+			return this;
+		}
+
+		public Builder url (String val) {
+			url = val;
+			return this;
+		}
+
+		public Builder header (String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+
+		public Builder body (byte[] val) {
+			body = val;
+			return this;
+		}
+
+		public HttpRequest build () {
+			if (url == null) {
+				throw new IllegalStateException("url is required");
+			}
+			return new HttpRequest(this);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** The response to a {@link HttpRequest}. The body is streamed; close the response (or read it with {@link #readBody()}) so
+ * the underlying connection can be reused. */
+public final class HttpResponse implements Closeable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final int statusCode;
+	private final InputStream body;
+	private final Runnable onClose;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	/** @param statusCode The HTTP status code.
+	 * @param body The response body.
+	 * @param onClose Called once when the response is closed, e.g. to release resources of the transport. May be null. */
+	public HttpResponse (int statusCode, InputStream body, Runnable onClose) {
+		this.statusCode = statusCode;
+		this.body = body;
+		this.onClose = onClose;
+	}
+
+	public int getStatusCode () {
+		return statusCode;
+	}
+
+	/** Returns true for 2xx status codes. */
+	public boolean isSuccessful () {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	/** Returns the body as stream. */
+	public InputStream getBody () {
+		return body;
+	}
+
+	/** Reads the whole body and closes the response. */
+	public byte[] readBody () throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = body.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			close();
+		}
+	}
+
+	/** Reads the whole body as UTF-8 text and closes the response. */
+	public String readBodyAsString () throws IOException {
+		return new String(readBody(), UTF_8);
+	}
+
+	@Override
+	public void close () throws IOException {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			body.close();
+		} finally {
+			if (onClose != null) onClose.run();
+		}
+	}
+}
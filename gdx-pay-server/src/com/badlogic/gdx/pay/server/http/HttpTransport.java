@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.http;
+
+import java.io.IOException;
+
+/** Sends HTTP requests for the server-side verifiers that talk to a store, e.g. Apple's verifyReceipt endpoint.
+ * <p>
+ * The default is {@link UrlConnectionTransport}. Plug in your own implementation to use a different HTTP client (e.g. an
+ * HTTP/2 client on newer JDKs) or to answer requests locally in tests. Implementations must be thread-safe. */
+public interface HttpTransport {
+
+	/** Sends a request and returns the response. The caller must close the response.
+	 *
+	 * @param request The request to send.
+	 * @return The response; also returned for error status codes.
+	 * @throws IOException If the request could not be sent or the response not received. */
+	HttpResponse execute(HttpRequest request) throws IOException;
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/** The default {@link HttpTransport}, based on {@link HttpURLConnection}.
+ * <p>
+ * Connections are kept alive and reused by the JDK as long as every response is closed, which saves a TLS handshake per
+ * verification. The JDK keeps up to 5 idle connections per host by default; raise the "http.maxConnections" system property
+ * if you run more verifications concurrently. The number of requests in flight is capped, so a slow store cannot make the
+ * server open an unbounded number of sockets.
+ * <p>
+ * This transport speaks HTTP/1.1 only. To use HTTP/2, implement {@link HttpTransport} on top of an HTTP/2 capable client. */
+public class UrlConnectionTransport implements HttpTransport {
+
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+	public static final int DEFAULT_READ_TIMEOUT_MILLIS = 15000;
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 256;
+
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	private final Semaphore permits;
+
+	public UrlConnectionTransport () {
+		this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/** @param connectTimeoutMillis Timeout for establishing a connection.
+	 * @param readTimeoutMillis Timeout for waiting on response data; also the longest a request waits for a free slot.
+	 * @param maxConcurrentRequests The maximum number of requests in flight, i.e. sent but with their response not closed. */
+	public UrlConnectionTransport (int connectTimeoutMillis, int readTimeoutMillis, int maxConcurrentRequests) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+		this.permits = new Semaphore(maxConcurrentRequests);
+	}
+
+	@Override
+	public HttpResponse execute (HttpRequest request) throws IOException {
+		try {
+			if (!permits.tryAcquire(readTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new IOException("Too many concurrent requests");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a free connection");
+		}
+
+		HttpURLConnection conn = null;
+		try {
+			conn = (HttpURLConnection)new URL(request.getUrl()).openConnection();
+			conn.setConnectTimeout(connectTimeoutMillis);
+			conn.setReadTimeout(readTimeoutMillis);
+			conn.setUseCaches(false);
+			conn.setRequestMethod(request.getMethod());
+			for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				conn.setRequestProperty(header.getKey(), header.getValue());
+			}
+			byte[] body = request.getBody();
+			if (body != null) {
+				conn.setDoOutput(true);
+				conn.setFixedLengthStreamingMode(body.length);
+				OutputStream out = conn.getOutputStream();
+				try {
+					out.write(body);
+				} finally {
+					out.close();
+				}
+			}
+
+			int statusCode = conn.getResponseCode();
+			InputStream in = statusCode >= 400 ? conn.getErrorStream() : conn.getInputStream();
+			if (in == null) {
+				in = new ByteArrayInputStream(new byte[0]);
+			}
+			return new HttpResponse(statusCode, in, new Runnable() {
+				@Override
+				public void run () {
+					permits.release();
+				}
+			});
+		} catch (IOException e) {
+			// drain the error stream so the connection can be kept alive instead of leaked
+			if (conn != null) {
+				drain(conn.getErrorStream());
+			}
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private static void drain (InputStream in) {
+		if (in == null) {
+			return;
+		}
+		try {
+			byte[] buffer = new byte[1024];
+			while (in.read(buffer) != -1) {
+			}
+		} catch (IOException ignored) {
+			// the connection is discarded instead
+		} finally {
+			try {
+				in.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+}
@@ -16,22 +16,68 @@
 
 package com.badlogic.gdx.pay.server.impl;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import com.badlogic.gdx.pay.PurchaseManagerConfig;
 import com.badlogic.gdx.pay.Transaction;
-
-import java.security.PublicKey;
+import com.badlogic.gdx.pay.server.VerificationResult;
 
 /**
  * Purchase verifier for Google Play. Return true if the purchase appears valid.
+ * <p>
+ * Several public keys can be active at the same time, e.g. while rotating keys: add the new key with
+ * {@link #addPublicKey(String)} and remove the old one with {@link #removePublicKey(String)} once it is no longer used.
+ * The key that matched last is tried first, so usually a single signature check is needed. Valid results report the
+ * position of the matching key in the {@link #CLAIM_KEY_INDEX} claim.
  *
  * @author noblemaster
  */
 public class PurchaseVerifierAndroidGoogle extends PurchaseVerifierBase {
 
-    private PublicKey publicKey;
+    /** Claim with the index of the public key that matched, among the current keys in the order they were added. */
+    public static final String CLAIM_KEY_INDEX = "keyIndex";
+
+    private static final Security.SecurityLogger QUIET = message -> {
+    };
 
+    /** The public keys, replaced as a whole on every change. */
+    private volatile KeyRing keyRing = KeyRing.EMPTY;
+    /** Index of the key that matched last. */
+    private volatile int preferredKey;
+
+    /** Sets the only public key, replacing all keys added before. */
     public void setPublicKey(String publicKeyString) {
-        publicKey = Security.generatePublicKey(publicKeyString);
+        setPublicKeys(publicKeyString);
+    }
+
+    /** Sets the public keys, replacing all keys added before. */
+    public synchronized void setPublicKeys(String... publicKeyStrings) {
+        KeyRing keyRing = KeyRing.EMPTY;
+        for (String publicKeyString : publicKeyStrings) {
+            keyRing = keyRing.with(publicKeyString);
+        }
+        update(keyRing);
+    }
+
+    /** Adds a public key to the keys accepted, e.g. the new key during a key rotation. The key is parsed right away. */
+    public synchronized void addPublicKey(String publicKeyString) {
+        update(keyRing.with(publicKeyString));
+    }
+
+    /** Removes a public key from the keys accepted, e.g. the old key after a key rotation. */
+    public synchronized void removePublicKey(String publicKeyString) {
+        update(keyRing.without(publicKeyString));
+    }
+
+    /** Returns the number of public keys accepted. */
+    public int getPublicKeyCount() {
+        return keyRing.verifiers.length;
+    }
+
+    private void update(KeyRing keyRing) {
+        this.preferredKey = 0;
+        this.keyRing = keyRing;
     }
 
     @Override
@@ -41,7 +87,83 @@ public class PurchaseVerifierAndroidGoogle extends PurchaseVerifierBase {
 
     @Override
     public boolean isValid(Transaction transaction) {
-        return Security.verify(publicKey, transaction.getTransactionData(),
-                transaction.getTransactionDataSignature());
+        return verify(transaction).isValid();
+    }
+
+    @Override
+    public VerificationResult verify(Transaction transaction) {
+        KeyRing keyRing = this.keyRing;
+        SignatureVerifier[] verifiers = keyRing.verifiers;
+        if (verifiers.length == 0) {
+            log("Public key not set.");
+            return VerificationResult.unsupported();
+        }
+        String data = transaction.getTransactionData();
+        String signature = transaction.getTransactionDataSignature();
+        try {
+            // the key that matched last first, then the others; only the last attempt logs a mismatch
+            int preferred = Math.min(preferredKey, verifiers.length - 1);
+            for (int attempt = 0; attempt < verifiers.length; attempt++) {
+                int index = (preferred + attempt) % verifiers.length;
+                Security.SecurityLogger logger = attempt == verifiers.length - 1 ? securityLogger : QUIET;
+                if (verifiers[index].verify(data, signature, logger)) {
+                    if (index != preferred && keyRing == this.keyRing) {
+                        preferredKey = index;
+                    }
+                    return VerificationResult.newBuilder()
+                            .status(VerificationResult.Status.VALID)
+                            .claims(Collections.<String, Object>singletonMap(CLAIM_KEY_INDEX, index))
+                            .build();
+                }
+            }
+            return VerificationResult.invalid();
+        } catch (IllegalArgumentException e) {
+            // signature is not valid Base64
+            return VerificationResult.newBuilder()
+                    .status(VerificationResult.Status.INVALID)
+                    .message(e.getMessage())
+                    .build();
+        }
+    }
+
+    /** An immutable list of public keys with their verifiers. */
+    private static final class KeyRing {
+        static final KeyRing EMPTY = new KeyRing(new String[0], new SignatureVerifier[0]);
+
+        final String[] publicKeyStrings;
+        final SignatureVerifier[] verifiers;
+
+        KeyRing(String[] publicKeyStrings, SignatureVerifier[] verifiers) {
+            this.publicKeyStrings = publicKeyStrings;
+            this.verifiers = verifiers;
+        }
+
+        KeyRing with(String publicKeyString) {
+            if (Arrays.asList(publicKeyStrings).contains(publicKeyString)) {
+                return this;
+            }
+            SignatureVerifier verifier = new SignatureVerifier(Security.generatePublicKey(publicKeyString));
+            String[] keys = Arrays.copyOf(publicKeyStrings, publicKeyStrings.length + 1);
+            SignatureVerifier[] verifiers = Arrays.copyOf(this.verifiers, this.verifiers.length + 1);
+            keys[keys.length - 1] = publicKeyString;
+            verifiers[verifiers.length - 1] = verifier;
+            return new KeyRing(keys, verifiers);
+        }
+
+        KeyRing without(String publicKeyString) {
+            int index = Arrays.asList(publicKeyStrings).indexOf(publicKeyString);
+            if (index < 0) {
+                return this;
+            }
+            String[] keys = new String[publicKeyStrings.length - 1];
+            SignatureVerifier[] verifiers = new SignatureVerifier[keys.length];
+            for (int i = 0, j = 0; i < publicKeyStrings.length; i++) {
+                if (i != index) {
+                    keys[j] = publicKeyStrings[i];
+                    verifiers[j++] = this.verifiers[i];
+                }
+            }
+            return new KeyRing(keys, verifiers);
+        }
     }
 }
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.impl;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.badlogic.gdx.pay.Offer;
+import com.badlogic.gdx.pay.OfferType;
+import com.badlogic.gdx.pay.PurchaseManagerConfig;
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import com.badlogic.gdx.pay.server.VerificationResult.Status;
+import com.badlogic.gdx.pay.server.http.HttpRequest;
+import com.badlogic.gdx.pay.server.http.HttpResponse;
+import com.badlogic.gdx.pay.server.http.HttpTransport;
+import com.badlogic.gdx.pay.server.util.JsonParser;
+
+/** Purchase verifier for Google Play that asks the Google Play Developer API. Return true if the purchase appears valid.
+ * <p>
+ * Unlike {@link PurchaseVerifierAndroidGoogle}, which only checks the signature of the purchase data, this looks up the
+ * purchase token ({@link Transaction#getRequestId()}) with Google, so purchases that were refunded, canceled or are still
+ * pending are rejected as well. One-time products are looked up with purchases.products, subscriptions with
+ * purchases.subscriptions; tell the verifier which products are subscriptions with {@link #setConfig(PurchaseManagerConfig)}
+ * or {@link #addSubscription(String)}. The claims of the result are the purchase resource returned by Google.
+ * <p>
+ * Requests go through a {@link HttpTransport}; share one transport between verifiers and the credentials so they share its
+ * connections. Access tokens are cached by the {@link GoogleServiceAccountCredentials}. For tests, point
+ * {@link #setApiUrl(String)} and the credentials at a local server, like {@code MockGooglePlayServer} in the tests of this
+ * module. */
+public class PurchaseVerifierAndroidGoogleApi extends PurchaseVerifierBase {
+
+	/** The Google Play Developer API. */
+	public static final String DEFAULT_API_URL = "https://androidpublisher.googleapis.com";
+
+	/** purchaseState of a purchased one-time product. */
+	public static final int PURCHASE_STATE_PURCHASED = 0;
+	/** purchaseState of a canceled one-time product. */
+	public static final int PURCHASE_STATE_CANCELED = 1;
+	/** purchaseState of a one-time product whose payment is pending. */
+	public static final int PURCHASE_STATE_PENDING = 2;
+	/** paymentState of a subscription whose payment is pending. */
+	public static final int PAYMENT_STATE_PENDING = 0;
+
+	private final String packageName;
+	private final GoogleServiceAccountCredentials credentials;
+	private final HttpTransport transport;
+	private volatile String apiUrl = DEFAULT_API_URL;
+	private volatile PurchaseManagerConfig config;
+	private final Set<String> subscriptions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/** @param packageName The package name of your app, e.g. "com.example.game".
+	 * @param credentials The service account to authenticate with; it must have access to the app in the Play Console.
+	 * @param transport The transport to send requests to Google with. */
+	public PurchaseVerifierAndroidGoogleApi (String packageName, GoogleServiceAccountCredentials credentials,
+		HttpTransport transport) {
+		this.packageName = packageName;
+		this.credentials = credentials;
+		this.transport = transport;
+	}
+
+	/** Overrides the API base URL, e.g. to point it at a local test server. */
+	public void setApiUrl (String apiUrl) {
+		this.apiUrl = apiUrl;
+	}
+
+	/** Products whose offer in the config has type {@link OfferType#SUBSCRIPTION} are looked up as subscriptions. */
+	public void setConfig (PurchaseManagerConfig config) {
+		this.config = config;
+	}
+
+	/** Looks up the product as a subscription, in addition to the subscriptions of the {@link #setConfig(PurchaseManagerConfig)
+	 * config}. */
+	public void addSubscription (String productId) {
+		subscriptions.add(productId);
+	}
+
+	@Override
+	public String storeName () {
+		return PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE;
+	}
+
+	@Override
+	public boolean isValid (Transaction transaction) {
+		return verify(transaction).isValid();
+	}
+
+	@Override
+	public VerificationResult verify (Transaction transaction) {
+		String productId = transaction.getIdentifier();
+		String purchaseToken = transaction.getRequestId();
+		if (productId == null || purchaseToken == null) {
+			log("Product identifier or purchase token missing.");
+			return VerificationResult.newBuilder().status(Status.INVALID).message("Product identifier or purchase token missing")
+				.build();
+		}
+
+		boolean subscription = isSubscription(productId);
+		String url = apiUrl + "/androidpublisher/v3/applications/" + encode(packageName) + "/purchases/"
+			+ (subscription ? "subscriptions/" : "products/") + encode(productId) + "/tokens/" + encode(purchaseToken);
+
+		try {
+			String accessToken = credentials.getAccessToken();
+			HttpResponse response = get(url, accessToken);
+			if (response.getStatusCode() == 401) {
+				// token revoked or expired early: get a new one and try once more
+				response.close();
+				credentials.invalidate(accessToken);
+				response = get(url, credentials.getAccessToken());
+			}
+			try {
+				return toResult(transaction, subscription, response);
+			} finally {
+				response.close();
+			}
+		} catch (IOException e) {
+			// I/O-error: might work next time
+			error("I/O error during verification: " + e, e);
+			return VerificationResult.retryable("I/O error during verification: " + e);
+		}
+	}
+
+	private HttpResponse get (String url, String accessToken) throws IOException {
+		return transport.execute(HttpRequest.newBuilder()
+			.method("GET")
+			.url(url)
+			.header("Authorization", "Bearer " + accessToken)
+			.header("Accept", "application/json")
+			.build());
+	}
+
+	private VerificationResult toResult (Transaction transaction, boolean subscription, HttpResponse response)
+		throws IOException {
+		int statusCode = response.getStatusCode();
+		if (statusCode == 400 || statusCode == 404 || statusCode == 410) {
+			// unknown or expired purchase token
+			log("Purchase not found: " + statusCode);
+			return VerificationResult.newBuilder().status(Status.INVALID).errorCode(statusCode).message("Purchase not found")
+				.build();
+		}
+		if (!response.isSuccessful()) {
+			// 401/403 (credentials), 429 (quota) and 5xx: might work next time
+			log("HTTP error during verification: " + statusCode);
+			return VerificationResult.newBuilder().status(Status.RETRYABLE).errorCode(statusCode)
+				.message("HTTP error during verification: " + statusCode).build();
+		}
+
+		Map<String, Object> purchase;
+		try {
+			purchase = JsonParser.parseObject(response.readBodyAsString());
+		} catch (IllegalArgumentException e) {
+			log("Malformed purchase: " + e.getMessage());
+			return VerificationResult.retryable("Malformed purchase: " + e.getMessage());
+		}
+		String message = subscription ? checkSubscription(purchase) : checkProduct(purchase);
+		if (message == null && !matchesOrder(transaction.getOrderId(), purchase.get("orderId"))) {
+			message = "Order id does not match";
+		}
+		if (message != null) {
+			log(message);
+		}
+		return VerificationResult.newBuilder()
+			.status(message == null ? Status.VALID : Status.INVALID)
+			.errorCode(statusCode)
+			.message(message)
+			.claims(purchase)
+			.build();
+	}
+
+	/** Returns why a purchases.products resource is not valid, or null if it is. */
+	protected String checkProduct (Map<String, Object> purchase) {
+		long purchaseState = toLong(purchase.get("purchaseState"), -1);
+		switch ((int)purchaseState) {
+			case PURCHASE_STATE_PURCHASED: return null;
+			case PURCHASE_STATE_CANCELED: return "Purchase canceled";
+			case PURCHASE_STATE_PENDING: return "Purchase pending";
+			default: return "Unknown purchase state: " + purchaseState;
+		}
+	}
+
+	/** Returns why a purchases.subscriptions resource is not valid, or null if it is. */
+	protected String checkSubscription (Map<String, Object> purchase) {
+		long expiryTimeMillis = toLong(purchase.get("expiryTimeMillis"), 0);
+		if (expiryTimeMillis <= System.currentTimeMillis()) {
+			return "Subscription expired";
+		}
+		if (toLong(purchase.get("paymentState"), -1) == PAYMENT_STATE_PENDING) {
+			return "Subscription payment pending";
+		}
+		return null;
+	}
+
+	private boolean isSubscription (String productId) {
+		if (subscriptions.contains(productId)) {
+			return true;
+		}
+		PurchaseManagerConfig config = this.config;
+		if (config == null) {
+			return false;
+		}
+		Offer offer = config.getOfferForStore(storeName(), productId);
+		if (offer == null) {
+			offer = config.getOffer(productId);
+		}
+		return offer != null && offer.getType() == OfferType.SUBSCRIPTION;
+	}
+
+	/** Subscription renewals carry the order id of the first purchase plus a suffix, e.g. "GPA.1234-5678..3". */
+	private static boolean matchesOrder (String orderId, Object purchaseOrderId) {
+		if (orderId == null || !(purchaseOrderId instanceof String)) {
+			return true;
+		}
+		String actual = (String)purchaseOrderId;
+		return actual.equals(orderId) || actual.startsWith(orderId + "..") || orderId.startsWith(actual + "..");
+	}
+
+	/** Google sends int64 values as strings. */
+	private static long toLong (Object value, long defaultValue) {
+		if (value instanceof Number) {
+			return ((Number)value).longValue();
+		}
+		if (value instanceof String) {
+			try {
+				return Long.parseLong((String)value);
+			} catch (NumberFormatException e) {
+				return defaultValue;
+			}
+		}
+		return defaultValue;
+	}
+
+	private static String encode (String segment) {
+		try {
+			// path segments: URLEncoder encodes spaces as '+', which is only valid in queries
+			return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+		} catch (UnsupportedEncodingException e) {
+			// every Java platform supports UTF-8
+			throw new IllegalStateException(e);
+		}
+	}
+}
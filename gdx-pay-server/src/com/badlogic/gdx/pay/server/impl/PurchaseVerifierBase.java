@@ -17,17 +17,43 @@
 package com.badlogic.gdx.pay.server.impl;
 
 import com.badlogic.gdx.pay.server.PurchaseVerifier;
+import com.badlogic.gdx.pay.server.log.VerificationLogger;
+import com.badlogic.gdx.pay.server.log.VerificationLoggers;
 
 /**
  * Base class for purchase verifier implementations with some common useful functionality
  */
 public abstract class PurchaseVerifierBase implements PurchaseVerifier {
+
+    private volatile VerificationLogger logger;
+
+    /** Logs {@link Security} messages, e.g. of a {@link SignatureVerifier}, to this verifier's logger. */
+    protected final Security.SecurityLogger securityLogger = new Security.SecurityLogger() {
+        @Override public void log (String message) {
+            PurchaseVerifierBase.this.log(message);
+        }
+    };
+
+    /**
+     * Sets the logger of this verifier.
+     *
+     * @param logger the logger or null to use {@link VerificationLoggers#getDefault()}
+     */
+    public void setLogger (VerificationLogger logger) {
+        this.logger = logger;
+    }
+
+    /** Returns the logger of this verifier. */
+    public VerificationLogger getLogger () {
+        VerificationLogger logger = this.logger;
+        return logger != null ? logger : VerificationLoggers.getDefault();
+    }
+
     protected void log (String message) {
-        System.out.println(message);
+        getLogger().log(message);
     }
 
     protected void error (String message, Exception ex) {
-        System.err.println(message);
-        ex.printStackTrace();
+        getLogger().error(message, ex);
     }
 }
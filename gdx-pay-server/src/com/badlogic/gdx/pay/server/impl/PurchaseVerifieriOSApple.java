@@ -17,32 +17,90 @@
 package com.badlogic.gdx.pay.server.impl;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.badlogic.gdx.pay.PurchaseManagerConfig;
 import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import com.badlogic.gdx.pay.server.VerificationResult.Status;
+import com.badlogic.gdx.pay.server.http.HttpRequest;
+import com.badlogic.gdx.pay.server.http.HttpResponse;
+import com.badlogic.gdx.pay.server.http.HttpTransport;
+import com.badlogic.gdx.pay.server.http.UrlConnectionTransport;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+import com.badlogic.gdx.pay.server.util.JsonStreamReader;
 
-/** Purchase verifier for iOS/Apple. Return true if the purchase appears valid.
+/** Purchase verifier for iOS/Apple. Return true if the purchase appears valid. Apple's status code is reported in the
+ * {@link VerificationResult}; transient failures (server unavailable, HTTP or I/O errors) are retryable.
+ * <p>
+ * Requests go through a {@link HttpTransport}. Share one transport between verifiers so they share its connections.
+ * <p>
+ * With {@link #setEnvironmentRouting(boolean) environment routing} enabled, one verifier handles both App Store and
+ * TestFlight/sandbox receipts: receipts are sent to production first and to the sandbox only if Apple answers 21007. The
+ * environment that answered is remembered per receipt, so repeated verifications go straight to the right endpoint.
  * @author noblemaster */
 public class PurchaseVerifieriOSApple extends PurchaseVerifierBase {
 
 	// sandbox URL
-	private final static String SANDBOX_URL = "https://sandbox.itunes.apple.com/verifyReceipt";
+	public final static String SANDBOX_URL = "https://sandbox.itunes.apple.com/verifyReceipt";
 	// production URL
-	private final static String PRODUCTION_URL = "https://buy.itunes.apple.com/verifyReceipt";
+	public final static String PRODUCTION_URL = "https://buy.itunes.apple.com/verifyReceipt";
+
+	/** Status code for a sandbox receipt sent to production. */
+	public final static int STATUS_SANDBOX_RECEIPT = 21007;
+	/** Status code for a production receipt sent to the sandbox. */
+	public final static int STATUS_PRODUCTION_RECEIPT = 21008;
+
+	/** Maximum number of receipts whose environment is remembered. */
+	private final static int MAX_REMEMBERED_RECEIPTS = 10000;
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
 
 	/** True for sandbox mode. */
 	private boolean sandbox;
+	private final HttpTransport transport;
+	private volatile String productionUrl = PRODUCTION_URL;
+	private volatile String sandboxUrl = SANDBOX_URL;
+	private volatile boolean environmentRouting;
+	/** True if a subclass overrides {@link #extractStatus(InputStream)}, which then takes precedence over
+	 * {@link #parseResponse(InputStream, boolean)}. */
+	private final boolean customStatusExtraction = overridesExtractStatus(getClass());
+
+	/** Hashes of receipts answered by the sandbox, least recently used first. Production is the default and not stored. */
+	private final LinkedHashMap<String, Boolean> sandboxReceipts = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
 	
 	public PurchaseVerifieriOSApple() {
 		this(false);
 	}
 	
 	public PurchaseVerifieriOSApple (boolean sandbox) {
+		this(sandbox, new UrlConnectionTransport());
+	}
+
+	/** @param sandbox True for sandbox mode.
+	 * @param transport The transport to send requests to Apple with. */
+	public PurchaseVerifieriOSApple (boolean sandbox, HttpTransport transport) {
 		this.sandbox = sandbox;
+		this.transport = transport;
+	}
+
+	/** Overrides the verifyReceipt endpoints, e.g. to point them at a local test server. */
+	public void setEndpoints (String productionUrl, String sandboxUrl) {
+		this.productionUrl = productionUrl;
+		this.sandboxUrl = sandboxUrl;
+	}
+
+	/** Enables environment routing: receipts are sent to production first and retried in the sandbox on status 21007 (and
+	 * vice versa on 21008 for receipts remembered as sandbox). The sandbox flag passed to the constructor is ignored while
+	 * routing is enabled. Disabled by default. */
+	public void setEnvironmentRouting (boolean environmentRouting) {
+		this.environmentRouting = environmentRouting;
 	}
 
 	@Override
@@ -52,96 +110,236 @@ public class PurchaseVerifieriOSApple extends PurchaseVerifierBase {
 
 	@Override
 	public boolean isValid (Transaction transaction) {
+		return verify(transaction).isValid();
+	}
+
+	@Override
+	public VerificationResult verify (Transaction transaction) {
 		// the transaction data is our original == receipt!
 		String receipt = transaction.getTransactionDataSignature();
+		if (!environmentRouting || receipt == null) {
+			return verify(receipt, sandbox);
+		}
 
+		String key = receiptHash(receipt);
+		boolean useSandbox = isSandboxReceipt(key);
+		VerificationResult result = verify(receipt, useSandbox);
+		Integer errorCode = result.getErrorCode();
+		if (errorCode != null && errorCode == (useSandbox ? STATUS_PRODUCTION_RECEIPT : STATUS_SANDBOX_RECEIPT)) {
+			// sent to the wrong environment: ask the other one
+			useSandbox = !useSandbox;
+			result = verify(receipt, useSandbox);
+			errorCode = result.getErrorCode();
+		}
+		if (errorCode != null && errorCode != STATUS_SANDBOX_RECEIPT && errorCode != STATUS_PRODUCTION_RECEIPT
+			&& result.getStatus() != Status.RETRYABLE) {
+			// the environment answered for this receipt
+			rememberEnvironment(key, useSandbox);
+		}
+		return result;
+	}
+
+	/** Sends the receipt to the production or sandbox endpoint. */
+	private VerificationResult verify (String receipt, boolean useSandbox) {
 		final String jsonData = "{\"receipt-data\" : \"" + receipt + "\"}";
 		try {
 			// send the data to Apple
-			final URL url = new URL(sandbox ? SANDBOX_URL : PRODUCTION_URL);
-			final HttpURLConnection conn = (HttpsURLConnection)url.openConnection();
-			conn.setRequestMethod("POST");
-			conn.setDoOutput(true);
-			conn.setRequestProperty("Content-Type", "application/json");
-			conn.setRequestProperty("Accept", "application/json");
-			final OutputStreamWriter wr = new OutputStreamWriter(conn.getOutputStream());
-			wr.write(jsonData);
-			wr.flush();
-
-			// obtain the response
-			int status = extractStatus(conn.getInputStream());
-
-			wr.close();
-			
-			switch (status) {
-				case -1: log(status + ": Status extraction failed"); return false;
-				case 0: return true;
-				case 21000: log(status + ": App store could not read"); return false;
-				case 21002: log(status + ": Data was malformed"); return false;
-				case 21003: log(status + ": Receipt not authenticated"); return false;
-				case 21004: log(status + ": Shared secret does not match"); return false;
-				case 21005: log(status + ": Receipt server unavailable"); return false;
-				case 21006: log(status + ": Receipt valid but sub expired"); return false;
-				case 21007: log(status + ": Sandbox receipt sent to Production environment"); return false;
-				case 21008: log(status + ": Production receipt sent to Sandbox environment"); return false;
-			   default:
-			   	// unknown error code (nevertheless a problem)
-			   	log("Unknown error: status code = " + status);
-			   	return false;
+			HttpResponse httpResponse = transport.execute(HttpRequest.postJson(useSandbox ? sandboxUrl : productionUrl, jsonData));
+			try {
+				if (!httpResponse.isSuccessful()) {
+					// Apple answers with a status code in the body; anything else is an outage
+					log("HTTP error during verification: " + httpResponse.getStatusCode());
+					return VerificationResult.newBuilder().status(Status.RETRYABLE).errorCode(httpResponse.getStatusCode())
+						.message("HTTP error during verification: " + httpResponse.getStatusCode()).build();
+				}
+
+				// obtain the response
+				if (customStatusExtraction) {
+					return toResult(extractStatus(httpResponse.getBody()));
+				}
+				ReceiptResponse response = parseResponse(httpResponse.getBody(), true);
+				return toResult(response.getStatus()).toBuilder().claims(response.toClaims()).build();
+			} finally {
+				httpResponse.close();
 			}
 		} catch (IOException e) {
-			// I/O-error: let's assume bad news...
+			// I/O-error: might work next time
 			error("I/O error during verification: " + e, e);
-			return false;
+			return VerificationResult.retryable("I/O error during verification: " + e);
 		}
 	}
 
+	private boolean isSandboxReceipt (String key) {
+		synchronized (sandboxReceipts) {
+			return sandboxReceipts.get(key) != null;
+		}
+	}
+
+	private void rememberEnvironment (String key, boolean sandbox) {
+		synchronized (sandboxReceipts) {
+			if (!sandbox) {
+				sandboxReceipts.remove(key);
+				return;
+			}
+			sandboxReceipts.put(key, Boolean.TRUE);
+			if (sandboxReceipts.size() > MAX_REMEMBERED_RECEIPTS) {
+				// the iterator starts at the least recently used entry
+				sandboxReceipts.remove(sandboxReceipts.keySet().iterator().next());
+			}
+		}
+	}
+
+	private static boolean overridesExtractStatus (Class<?> type) {
+		for (Class<?> c = type; c != PurchaseVerifieriOSApple.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("extractStatus", InputStream.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not declared here, try the superclass
+			}
+		}
+		return false;
+	}
+
+	private static String receiptHash (String receipt) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return new String(Base64Util.encode(digest.digest(receipt.getBytes(UTF_8))));
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Maps a verifyReceipt status code to a verification result.
+	 *
+	 * @param status The status code returned by Apple or -1 if it could not be extracted.
+	 * @return The verification result carrying the status code. */
+	protected VerificationResult toResult (int status) {
+		switch (status) {
+			case -1: return failure(Status.RETRYABLE, status, "Status extraction failed");
+			case 0: return VerificationResult.newBuilder().status(Status.VALID).errorCode(status).build();
+			case 21000: return failure(Status.INVALID, status, "App store could not read");
+			case 21002: return failure(Status.INVALID, status, "Data was malformed");
+			case 21003: return failure(Status.INVALID, status, "Receipt not authenticated");
+			case 21004: return failure(Status.INVALID, status, "Shared secret does not match");
+			case 21005: return failure(Status.RETRYABLE, status, "Receipt server unavailable");
+			case 21006: return failure(Status.INVALID, status, "Receipt valid but sub expired");
+			case STATUS_SANDBOX_RECEIPT: return failure(Status.INVALID, status, "Sandbox receipt sent to Production environment");
+			case STATUS_PRODUCTION_RECEIPT: return failure(Status.INVALID, status, "Production receipt sent to Sandbox environment");
+			case 21009: return failure(Status.RETRYABLE, status, "Internal data access error");
+			case 21010: return failure(Status.INVALID, status, "User account cannot be found or has been deleted");
+			default:
+				if (status >= 21100 && status <= 21199) {
+					return failure(Status.RETRYABLE, status, "Internal data access error");
+				}
+				// unknown error code (nevertheless a problem)
+				log("Unknown error: status code = " + status);
+				return VerificationResult.newBuilder().status(Status.INVALID).errorCode(status)
+					.message("Unknown error").build();
+		}
+	}
+
+	private VerificationResult failure (Status resultStatus, int status, String message) {
+		log(status + ": " + message);
+		return VerificationResult.newBuilder().status(resultStatus).errorCode(status).message(message).build();
+	}
+
 	/**
 	 * Attempt to extract message from incoming json stream
 	 * The contents should be something along the lines of '{"status":21004}'
-	 * Override this method if you want to use more robust json parser
+	 * Override {@link #parseResponse(InputStream, boolean)} if you want to use a different json parser. If this method is
+	 * overridden, verification uses it instead of {@link #parseResponse(InputStream, boolean)}, so results carry the status
+	 * code but no claims.
 	 *
 	 * @param inputStream input stream with json message
 	 * @return extracted status or -1 if not possible
 	 */
 	protected int extractStatus (InputStream inputStream) {
-		int status = -1;
-		BufferedReader rd = null;
+		return parseResponse(inputStream, false).getStatus();
+	}
+
+	/**
+	 * Parses a verifyReceipt response. The response is scanned as a stream: only "status", "environment" and, if
+	 * requested, the "latest_receipt_info" entries are decoded, everything else (e.g. the base64 encoded
+	 * "latest_receipt") is skipped without building strings.
+	 *
+	 * @param inputStream input stream with json message, closed when done
+	 * @param withReceiptInfo true to also decode the "latest_receipt_info" entries
+	 * @return the parsed response; its status is -1 if the response could not be parsed
+	 */
+	protected ReceiptResponse parseResponse (InputStream inputStream, boolean withReceiptInfo) {
+		ReceiptResponse response = new ReceiptResponse();
 		try {
-			rd = new BufferedReader(new InputStreamReader(inputStream));
-			String line;
-			// verify the response: something like {"status":21004} etc...
-			final String search = "\"status\":";
-			while ((line = rd.readLine()) != null) {
-				int indexOf = line.indexOf(search);
-				if (indexOf == -1) continue;
-				int start = indexOf + search.length();
-				while (Character.isWhitespace(line.charAt(start))) {
-					start++;
-				}
-				int end = start + 1;
-				while (Character.isDigit(line.charAt(end))) {
-					end++;
+			JsonStreamReader reader = new JsonStreamReader(inputStream);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("status")) {
+					response.status = (int)reader.nextLong();
+					if (!withReceiptInfo) break;
+				} else if (name.equals("environment") && reader.peek() == JsonStreamReader.Token.STRING) {
+					response.environment = reader.nextString();
+				} else if (name.equals("latest_receipt_info") && withReceiptInfo
+					&& reader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+					response.latestReceiptInfo = new ArrayList<Map<String, Object>>();
+					reader.beginArray();
+					while (reader.hasNext()) {
+						Object entry = reader.nextValue();
+						if (entry instanceof Map) {
+							@SuppressWarnings("unchecked")
+							Map<String, Object> fields = (Map<String, Object>)entry;
+							response.latestReceiptInfo.add(fields);
+						}
+					}
+					reader.endArray();
+				} else {
+					reader.skipValue();
 				}
-				status = Integer.parseInt(line.substring(start, end));
-				break;
 			}
 		} catch (IOException ex) {
 			error("Status extraction failed: " + ex, ex);
-		} catch (NumberFormatException ex) {
-			error("Status extraction failed: " + ex, ex);
-		} catch (IndexOutOfBoundsException ex) {
-			error("Status extraction failed: " + ex, ex);
+			response.status = -1;
 		} finally {
 			try {
-				if (rd != null) rd.close();
+				inputStream.close();
 			} catch (IOException ex) {
 				error("Close failed: ", ex);
 			}
 		}
-		return status;
+		return response;
 	}
-	
+
+	/** The fields of a verifyReceipt response gdx-pay cares about. */
+	public static class ReceiptResponse {
+		int status = -1;
+		String environment;
+		List<Map<String, Object>> latestReceiptInfo;
+
+		/** The status code or -1 if it could not be extracted. */
+		public int getStatus () {
+			return status;
+		}
+
+		/** "Production" or "Sandbox", or null if not part of the response. */
+		public String getEnvironment () {
+			return environment;
+		}
+
+		/** The "latest_receipt_info" entries or null if not part of the response (or not requested). */
+		public List<Map<String, Object>> getLatestReceiptInfo () {
+			return latestReceiptInfo;
+		}
+
+		/** Returns the response fields as verification claims. */
+		public Map<String, Object> toClaims () {
+			Map<String, Object> claims = new LinkedHashMap<String, Object>();
+			if (environment != null) claims.put("environment", environment);
+			if (latestReceiptInfo != null) claims.put("latest_receipt_info", latestReceiptInfo);
+			return claims;
+		}
+	}
+
 	/** Just used for testing... */
 	public static void main(String[] args) {
 		// test in sandbox-mode
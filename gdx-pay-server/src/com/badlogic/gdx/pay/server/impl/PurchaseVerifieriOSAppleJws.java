@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.badlogic.gdx.pay.PurchaseManagerConfig;
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+import com.badlogic.gdx.pay.server.util.JsonParser;
+
+/** Purchase verifier for iOS/Apple StoreKit 2 transactions. Return true if the purchase appears valid.
+ * <p>
+ * StoreKit 2 hands out every transaction as a JSON Web Signature (the "jwsRepresentation", which gdx-pay stores in
+ * {@link Transaction#getTransactionDataSignature()}). The JWS is signed with ES256 by a certificate whose chain (the "x5c"
+ * header) leads up to an Apple root certificate. This verifier checks that chain against the configured root and the
+ * signature locally, so no round trip to Apple is needed.
+ * <p>
+ * Download the root certificate ("Apple Root CA - G3") from https://www.apple.com/certificateauthority/ and load it with
+ * {@link #loadCertificate(InputStream)}. */
+public class PurchaseVerifieriOSAppleJws extends PurchaseVerifierBase {
+
+	/** Marker extension of the certificate that signs App Store data. */
+	public static final String OID_APP_STORE_SIGNING = "1.2.840.113635.100.6.11.1";
+	/** Marker extension of the Apple Worldwide Developer Relations intermediate certificate. */
+	public static final String OID_WWDR_INTERMEDIATE = "1.2.840.113635.100.6.2.1";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+	/** Maximum number of validated certificate chains we remember. */
+	private static final int MAX_CACHED_CHAINS = 32;
+
+	private final TrustAnchor trustAnchor;
+	private final String bundleId;
+	private boolean requireAppleExtensions = true;
+
+	/** Signing certificates of already validated chains, keyed by the encoded JWS header (which contains the chain). */
+	private final Map<String, X509Certificate> validatedKeys = new ConcurrentHashMap<String, X509Certificate>();
+
+	/** Constructs the purchase-verifier for StoreKit 2 transactions.
+	 *
+	 * @param appleRootCertificate The Apple root certificate to trust.
+	 * @param bundleId The bundle identifier of your app, or null to accept transactions of any app. */
+	public PurchaseVerifieriOSAppleJws (X509Certificate appleRootCertificate, String bundleId) {
+		this.trustAnchor = new TrustAnchor(appleRootCertificate, null);
+		this.bundleId = bundleId;
+	}
+
+	/** Loads a DER or PEM encoded X.509 certificate, e.g. the Apple root certificate.
+	 * @throws IllegalArgumentException If the certificate cannot be read. */
+	public static X509Certificate loadCertificate (InputStream inputStream) {
+		try {
+			return (X509Certificate)CertificateFactory.getInstance("X.509").generateCertificate(inputStream);
+		} catch (CertificateException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/** Whether the leaf and intermediate certificates must carry Apple's marker extensions. True by default; only disable
+	 * this for tests with self-made certificates. */
+	public void setRequireAppleExtensions (boolean requireAppleExtensions) {
+		this.requireAppleExtensions = requireAppleExtensions;
+	}
+
+	@Override
+	public String storeName () {
+		return PurchaseManagerConfig.STORE_NAME_IOS_APPLE;
+	}
+
+	@Override
+	public boolean isValid (Transaction transaction) {
+		return verify(transaction).isValid();
+	}
+
+	/** Verifies the transaction; the result carries the JWS payload claims if the signature is valid. */
+	@Override
+	public VerificationResult verify (Transaction transaction) {
+		Map<String, Object> claims = verifyAndDecode(transaction.getTransactionDataSignature());
+		if (claims == null) {
+			return VerificationResult.invalid();
+		}
+		return VerificationResult.newBuilder()
+			.status(isValid(transaction, claims) ? VerificationResult.Status.VALID : VerificationResult.Status.INVALID)
+			.claims(claims)
+			.build();
+	}
+
+	/** Checks the verified claims against the transaction. Override to add checks, e.g. on the product or environment.
+	 *
+	 * @param transaction The transaction to verify.
+	 * @param claims The claims of the signature-verified JWS payload.
+	 * @return True for considered valid. */
+	protected boolean isValid (Transaction transaction, Map<String, Object> claims) {
+		if (bundleId != null && !bundleId.equals(claims.get("bundleId"))) {
+			log("JWS bundle id does not match: " + claims.get("bundleId"));
+			return false;
+		}
+		Object originalTransactionId = claims.get("originalTransactionId");
+		Object transactionId = claims.get("transactionId");
+		String orderId = transaction.getOrderId();
+		if (orderId != null && !orderId.equals(originalTransactionId) && !orderId.equals(transactionId)) {
+			log("JWS transaction id does not match order id: " + orderId);
+			return false;
+		}
+		if (claims.get("revocationDate") != null) {
+			log("Transaction was revoked: " + transactionId);
+			return false;
+		}
+		return true;
+	}
+
+	/** Verifies a StoreKit 2 JWS and returns its payload claims. The certificate chain and the signature are checked before
+	 * the payload is parsed, so unsigned input never reaches the JSON parser beyond the header.
+	 *
+	 * @param jws The compact JWS ("header.payload.signature").
+	 * @return The payload claims, or null if the JWS is malformed or its signature or certificate chain is not valid. */
+	public Map<String, Object> verifyAndDecode (String jws) {
+		if (jws == null) {
+			return null;
+		}
+		int dot1 = jws.indexOf('.');
+		int dot2 = jws.indexOf('.', dot1 + 1);
+		if (dot1 <= 0 || dot2 <= dot1 || jws.indexOf('.', dot2 + 1) != -1) {
+			log("JWS is malformed");
+			return null;
+		}
+		String header = jws.substring(0, dot1);
+		String payload = jws.substring(dot1 + 1, dot2);
+		try {
+			X509Certificate signingCertificate = validatedKeys.get(header);
+			if (signingCertificate == null) {
+				signingCertificate = validateHeader(header);
+				if (signingCertificate == null) {
+					return null;
+				}
+				if (validatedKeys.size() >= MAX_CACHED_CHAINS) {
+					validatedKeys.clear();
+				}
+				validatedKeys.put(header, signingCertificate);
+			}
+
+			Signature sig = Signature.getInstance("SHA256withECDSA");
+			sig.initVerify(signingCertificate.getPublicKey());
+			sig.update(jws.substring(0, dot2).getBytes(US_ASCII));
+			if (!sig.verify(toDerSignature(Base64Util.decodeUnpadded(jws.substring(dot2 + 1), Base64Util.urlsafeMap)))) {
+				log("JWS signature verification failed");
+				return null;
+			}
+
+			// signed by a trusted certificate: only now look at the payload
+			Map<String, Object> claims = JsonParser.parseObject(decodeSegment(payload));
+			// the chain may have been validated at the leaf's expiry: the signing date must fall within its validity
+			Object signedDate = claims.get("signedDate");
+			if (!(signedDate instanceof Number)) {
+				log("JWS signing date missing");
+				return null;
+			}
+			try {
+				signingCertificate.checkValidity(new Date(((Number)signedDate).longValue()));
+			} catch (CertificateException e) {
+				log("JWS signed outside the validity of its certificate: " + e.getMessage());
+				return null;
+			}
+			return claims;
+		} catch (IllegalArgumentException e) {
+			log("JWS is malformed: " + e.getMessage());
+			return null;
+		} catch (GeneralSecurityException e) {
+			error("JWS verification failed: " + e, e);
+			return null;
+		}
+	}
+
+	/** Validates the header's algorithm and certificate chain.
+	 * @return The leaf certificate or null if the chain is not trusted. */
+	private X509Certificate validateHeader (String header) throws GeneralSecurityException {
+		Map<String, Object> fields = JsonParser.parseObject(decodeSegment(header));
+		if (!"ES256".equals(fields.get("alg"))) {
+			log("JWS algorithm not supported: " + fields.get("alg"));
+			return null;
+		}
+		Object x5c = fields.get("x5c");
+		if (!(x5c instanceof List) || ((List<?>)x5c).isEmpty()) {
+			log("JWS certificate chain missing");
+			return null;
+		}
+
+		CertificateFactory factory = CertificateFactory.getInstance("X.509");
+		List<X509Certificate> chain = new ArrayList<X509Certificate>();
+		for (Object encoded : (List<?>)x5c) {
+			if (!(encoded instanceof String)) {
+				log("JWS certificate chain malformed");
+				return null;
+			}
+			byte[] der = Base64Util.decode((String)encoded);
+			chain.add((X509Certificate)factory.generateCertificate(new ByteArrayInputStream(der)));
+		}
+		// the root is our trust anchor: it must not be part of the path itself
+		X509Certificate last = chain.get(chain.size() - 1);
+		if (chain.size() > 1 && last.equals(trustAnchor.getTrustedCert())) {
+			chain.remove(chain.size() - 1);
+		}
+		if (requireAppleExtensions) {
+			if (chain.get(0).getExtensionValue(OID_APP_STORE_SIGNING) == null
+				|| (chain.size() > 1 && chain.get(1).getExtensionValue(OID_WWDR_INTERMEDIATE) == null)) {
+				log("JWS certificate chain lacks Apple extensions");
+				return null;
+			}
+		}
+
+		CertPath path = factory.generateCertPath(chain);
+		PKIXParameters parameters = new PKIXParameters(Collections.singleton(trustAnchor));
+		parameters.setRevocationEnabled(false);
+		// validate no later than the leaf expired, so old transactions stay verifiable after certificate renewal; the signing
+		// date is checked against the leaf once the signature is verified
+		Date now = new Date();
+		Date notAfter = chain.get(0).getNotAfter();
+		parameters.setDate(now.after(notAfter) ? notAfter : now);
+		try {
+			CertPathValidator.getInstance("PKIX").validate(path, parameters);
+		} catch (GeneralSecurityException e) {
+			log("JWS certificate chain not trusted: " + e.getMessage());
+			return null;
+		}
+		return chain.get(0);
+	}
+
+	private static String decodeSegment (String segment) {
+		return new String(Base64Util.decodeUnpadded(segment, Base64Util.urlsafeMap), UTF_8);
+	}
+
+	/** Converts a JWS ES256 signature (R and S concatenated, 32 bytes each) into the DER sequence expected by
+	 * {@link Signature}. */
+	static byte[] toDerSignature (byte[] raw) {
+		if (raw.length != 64) {
+			throw new IllegalArgumentException("Invalid ECDSA signature length: " + raw.length);
+		}
+		int half = raw.length / 2;
+		ByteArrayOutputStream integers = new ByteArrayOutputStream(raw.length + 6);
+		writeDerInteger(integers, raw, 0, half);
+		writeDerInteger(integers, raw, half, half);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(integers.size() + 3);
+		out.write(0x30);
+		writeDerLength(out, integers.size());
+		try {
+			integers.writeTo(out);
+		} catch (IOException e) {
+			// cannot happen for in-memory streams
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeDerInteger (ByteArrayOutputStream out, byte[] raw, int off, int len) {
+		// strip leading zeros, keep a zero byte if the value would otherwise be negative
+		while (len > 1 && raw[off] == 0) {
+			off++;
+			len--;
+		}
+		boolean pad = (raw[off] & 0x80) != 0;
+		out.write(0x02);
+		writeDerLength(out, len + (pad ? 1 : 0));
+		if (pad) out.write(0);
+		out.write(raw, off, len);
+	}
+
+	private static void writeDerLength (ByteArrayOutputStream out, int length) {
+		if (length < 0x80) {
+			out.write(length);
+		} else {
+			out.write(0x81);
+			out.write(length);
+		}
+	}
+}
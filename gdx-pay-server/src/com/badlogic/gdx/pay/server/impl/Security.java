@@ -1,7 +1,9 @@
 package com.badlogic.gdx.pay.server.impl;
 
+import com.badlogic.gdx.pay.server.log.VerificationLoggers;
 import com.badlogic.gdx.pay.server.util.Base64Util;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
@@ -14,9 +16,10 @@ import java.security.spec.X509EncodedKeySpec;
 public class Security {
     private static final String KEY_FACTORY_ALGORITHM = "RSA";
     private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
-    private static final SecurityLogger logger = new SecurityLogger() {
+    /** Logs to {@link VerificationLoggers#getDefault()}. */
+    static final SecurityLogger logger = new SecurityLogger() {
         @Override public void log (String message) {
-            System.out.println(message);
+            VerificationLoggers.getDefault().log(message);
         }
     };
 
@@ -35,7 +38,7 @@ public class Security {
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         } catch (InvalidKeySpecException e) {
-            System.out.println("Invalid key specification.");
+            logger.log("Invalid key specification.");
             throw new IllegalArgumentException(e);
         }
     }
@@ -64,11 +67,11 @@ public class Security {
      * @return true if the data and signature match
      */
     public static boolean verify(PublicKey publicKey, String signedData, String signature, SecurityLogger logger) {
-        byte[] signatureBytes;
         try {
-            signatureBytes = Base64Util.decode(signature);
-            Signature sig = Signature.getInstance(SIGNATURE_ALGORITHM);
-            sig.initVerify(publicKey);
+            // decode straight from the string, without copying it into a char array first
+            byte[] signatureBytes = new byte[Base64Util.decodedLength(signature)];
+            Base64Util.decode(signature, ByteBuffer.wrap(signatureBytes));
+            Signature sig = newVerifier(publicKey);
             sig.update(signedData.getBytes());
             if (!sig.verify(signatureBytes)) {
                 logger.log("Signature verification failed.");
@@ -85,6 +88,20 @@ public class Security {
         return false;
     }
 
+    /**
+     * Creates a signature engine initialized for verification with the given key. The engine
+     * can be reused for consecutive verifications (see {@link SignatureVerifier}), but must not
+     * be shared between threads.
+     *
+     * @param publicKey public key associated with the developer account
+     * @return the initialized signature engine
+     */
+    static Signature newVerifier(PublicKey publicKey) throws NoSuchAlgorithmException, InvalidKeyException {
+        Signature sig = Signature.getInstance(SIGNATURE_ALGORITHM);
+        sig.initVerify(publicKey);
+        return sig;
+    }
+
     public interface SecurityLogger {
         void log(String message);
     }
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.impl;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.pay.server.util.Base64Util;
+
+/**
+ * Thread-safe, reusable signature verifier bound to one public key.
+ * <p>
+ * Unlike {@link Security#verify(PublicKey, String, String)}, which looks up and initializes a new
+ * {@link Signature} engine on every call, this keeps a pool of initialized engines, each with a buffer
+ * the signature is decoded into. A pool is used instead of a thread-local so engines are also reused
+ * across short-lived (e.g. virtual) threads.
+ */
+public class SignatureVerifier {
+
+    /** Default maximum number of idle engines kept in the pool. */
+    public static final int DEFAULT_MAX_IDLE = 64;
+
+    private final PublicKey publicKey;
+    private final int maxIdle;
+    private final Queue<Engine> idle = new ConcurrentLinkedQueue<Engine>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public SignatureVerifier(PublicKey publicKey) {
+        this(publicKey, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param publicKey public key associated with the developer account
+     * @param maxIdle   maximum number of idle engines kept for reuse
+     */
+    public SignatureVerifier(PublicKey publicKey, int maxIdle) {
+        this.publicKey = publicKey;
+        this.maxIdle = maxIdle;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Verifies that the signature from the server matches the computed
+     * signature on the data.  Returns true if the data is correctly signed.
+     *
+     * @param signedData signed data from server
+     * @param signature  server signature
+     * @return true if the data and signature match
+     */
+    public boolean verify(String signedData, String signature) {
+        return verify(signedData, signature, Security.logger);
+    }
+
+    /**
+     * Verifies that the signature from the server matches the computed
+     * signature on the data.  Returns true if the data is correctly signed.
+     *
+     * @param signedData signed data from server
+     * @param signature  server signature
+     * @param logger logger that will log any issues
+     * @return true if the data and signature match
+     */
+    public boolean verify(String signedData, String signature, Security.SecurityLogger logger) {
+        int signatureLength = Base64Util.decodedLength(signature);
+        Engine engine = idle.poll();
+        if (engine != null) {
+            idleCount.decrementAndGet();
+        } else {
+            try {
+                engine = new Engine(Security.newVerifier(publicKey));
+            } catch (NoSuchAlgorithmException e) {
+                logger.log("NoSuchAlgorithmException.");
+                return false;
+            } catch (InvalidKeyException e) {
+                logger.log("Invalid key specification.");
+                return false;
+            }
+        }
+
+        boolean valid;
+        try {
+            // decode into the engine's scratch buffer: no copies of the signature per call
+            byte[] signatureBytes = engine.scratch(signatureLength);
+            Base64Util.decode(signature, ByteBuffer.wrap(signatureBytes));
+            engine.signature.update(signedData.getBytes());
+            valid = engine.signature.verify(signatureBytes, 0, signatureLength);
+        } catch (IllegalArgumentException e) {
+            // nothing was fed to the engine yet
+            release(engine);
+            throw e;
+        } catch (SignatureException e) {
+            // engine state is unknown now: don't return it to the pool
+            logger.log("Signature exception.");
+            return false;
+        }
+
+        // verify() resets the engine to its initialized state, so it can be reused
+        release(engine);
+        if (!valid) {
+            logger.log("Signature verification failed.");
+        }
+        return valid;
+    }
+
+    private void release(Engine engine) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(engine);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /** An initialized signature engine with a buffer for decoded signatures. */
+    private static final class Engine {
+        final Signature signature;
+        private byte[] scratch = new byte[256];
+
+        Engine(Signature signature) {
+            this.signature = signature;
+        }
+
+        byte[] scratch(int length) {
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            return scratch;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.log;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Hands messages to another logger on a background thread, so verifying threads never wait for the console or a log
+ * file. Messages are put in a bounded queue; when it is full they are dropped and counted rather than blocking the caller.
+ * The number of dropped messages is logged once there is room again. */
+public class AsyncVerificationLogger implements VerificationLogger, Closeable {
+
+	/** Default number of messages the queue holds. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final VerificationLogger delegate;
+	private final BlockingQueue<Entry> queue;
+	private final LongAdder dropped = new LongAdder();
+	private final Thread writer;
+	private volatile boolean closed;
+
+	/** Creates a logger writing to the console through a queue of {@link #DEFAULT_CAPACITY} messages. */
+	public AsyncVerificationLogger () {
+		this(VerificationLogger.CONSOLE, DEFAULT_CAPACITY);
+	}
+
+	/** @param delegate The logger to write the messages to, on the background thread.
+	 * @param capacity The number of messages the queue holds. */
+	public AsyncVerificationLogger (VerificationLogger delegate, int capacity) {
+		this.delegate = delegate;
+		this.queue = new ArrayBlockingQueue<Entry>(capacity);
+		this.writer = new Thread(this::write, "gdx-pay-logger");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void log (String message) {
+		enqueue(new Entry(message, null));
+	}
+
+	@Override
+	public void error (String message, Throwable error) {
+		enqueue(new Entry(message, error));
+	}
+
+	/** Returns the number of messages dropped because the queue was full or the logger closed. */
+	public long getDroppedCount () {
+		return dropped.sum();
+	}
+
+	/** Returns the number of messages waiting to be written. */
+	public int getQueuedCount () {
+		return queue.size();
+	}
+
+	/** Writes the queued messages and stops the background thread. Messages logged afterwards are dropped. */
+	@Override
+	public void close () {
+		closed = true;
+		writer.interrupt();
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void enqueue (Entry entry) {
+		if (closed || !queue.offer(entry)) {
+			dropped.increment();
+		}
+	}
+
+	private void write () {
+		long reportedDrops = 0;
+		while (true) {
+			Entry entry;
+			try {
+				entry = closed ? queue.poll() : queue.take();
+			} catch (InterruptedException e) {
+				// closed: write what is left
+				continue;
+			}
+			if (entry == null) {
+				return;
+			}
+			long drops = dropped.sum();
+			if (drops != reportedDrops) {
+				write(new Entry("Log queue full, dropped " + (drops - reportedDrops) + " messages", null));
+				reportedDrops = drops;
+			}
+			write(entry);
+		}
+	}
+
+	private void write (Entry entry) {
+		try {
+			if (entry.error == null) {
+				delegate.log(entry.message);
+			} else {
+				delegate.error(entry.message, entry.error);
+			}
+		} catch (RuntimeException e) {
+			// a failing logger must not stop the writer
+		}
+	}
+
+	private static final class Entry {
+		final String message;
+		final Throwable error;
+
+		Entry (String message, Throwable error) {
+			this.message = message;
+			this.error = error;
+		}
+	}
+}
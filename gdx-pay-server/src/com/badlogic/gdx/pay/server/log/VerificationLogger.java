@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.log;
+
+/** Receives the log messages of the verifiers and {@link com.badlogic.gdx.pay.server.impl.Security}. Implement it to forward
+ * the messages to your logging framework and install it with {@link VerificationLoggers#setDefault(VerificationLogger)} or
+ * per verifier with {@link com.badlogic.gdx.pay.server.impl.PurchaseVerifierBase#setLogger(VerificationLogger)}.
+ * <p>
+ * Loggers are called on the verifying threads and must be thread-safe. Wrap slow loggers in an
+ * {@link AsyncVerificationLogger} so they do not hold up verification. */
+public interface VerificationLogger {
+
+	/** Writes messages to {@link System#out} and errors to {@link System#err}, on the calling thread. */
+	VerificationLogger CONSOLE = new VerificationLogger() {
+		@Override
+		public void log (String message) {
+			System.out.println(message);
+		}
+
+		@Override
+		public void error (String message, Throwable error) {
+			System.err.println(message);
+			if (error != null) {
+				error.printStackTrace();
+			}
+		}
+	};
+
+	/** Discards all messages. */
+	VerificationLogger NONE = new VerificationLogger() {
+		@Override
+		public void log (String message) {
+		}
+
+		@Override
+		public void error (String message, Throwable error) {
+		}
+	};
+
+	/** Logs an informational message, e.g. why a transaction is invalid. */
+	void log (String message);
+
+	/** Logs an unexpected error.
+	 *
+	 * @param message What failed.
+	 * @param error The cause or null. */
+	void error (String message, Throwable error);
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.log;
+
+/** Holds the logger used by verifiers and {@link com.badlogic.gdx.pay.server.impl.Security} unless they were given one
+ * explicitly. */
+public final class VerificationLoggers {
+
+	private static volatile VerificationLogger defaultLogger;
+
+	/** Returns the default logger: the one set with {@link #setDefault(VerificationLogger)}, otherwise an
+	 * {@link AsyncVerificationLogger} writing to the console. */
+	public static VerificationLogger getDefault () {
+		VerificationLogger logger = defaultLogger;
+		return logger != null ? logger : ConsoleHolder.LOGGER;
+	}
+
+	/** Sets the default logger.
+	 *
+	 * @param logger The logger or null to restore the asynchronous console logger. */
+	public static void setDefault (VerificationLogger logger) {
+		defaultLogger = logger;
+	}
+
+	private static final class ConsoleHolder {
+		static final VerificationLogger LOGGER = new AsyncVerificationLogger();
+	}
+
+	// Dummy constructor.
+	private VerificationLoggers () {
+	}
+}
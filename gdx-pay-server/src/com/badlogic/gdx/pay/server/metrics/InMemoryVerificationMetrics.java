@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.metrics;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.badlogic.gdx.pay.server.VerificationResult;
+
+/** Keeps counters and a {@link LatencyHistogram} per store in memory:
+ *
+ * <pre>
+ * InMemoryVerificationMetrics metrics = new InMemoryVerificationMetrics();
+ * verifier.setMetrics(metrics);
+ * ...
+ * StoreMetrics apple = metrics.getStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE);
+ * long p99 = apple.getLatency().getValueAtPercentile(99);
+ * </pre>
+ *
+ * The values are cumulative and can be polled, e.g. by Micrometer {@code FunctionCounter}s and {@code Gauge}s or a JMX
+ * bean. */
+public class InMemoryVerificationMetrics implements VerificationMetrics {
+
+	private final ConcurrentMap<String, StoreMetrics> stores = new ConcurrentHashMap<String, StoreMetrics>();
+
+	@Override
+	public void recordResult (String storeName, VerificationResult.Status status, long latencyNanos) {
+		StoreMetrics store = store(storeName);
+		store.results[status.ordinal()].increment();
+		store.latency.record(latencyNanos);
+	}
+
+	@Override
+	public void recordFailure (String storeName, Throwable error, long latencyNanos) {
+		StoreMetrics store = store(storeName);
+		store.failures.increment();
+		store.latency.record(latencyNanos);
+	}
+
+	/** Fallback results are counted apart from the results of their status. */
+	@Override
+	public void recordFallback (String storeName, VerificationResult.Status status, long latencyNanos) {
+		StoreMetrics store = store(storeName);
+		store.fallbacks.increment();
+		store.latency.record(latencyNanos);
+	}
+
+	/** Returns the names of the stores with recorded verifications. */
+	public Set<String> getStoreNames () {
+		return Collections.unmodifiableSet(stores.keySet());
+	}
+
+	/** Returns the metrics of a store or null if no verification was recorded for it. */
+	public StoreMetrics getStore (String storeName) {
+		return stores.get(storeName);
+	}
+
+	private StoreMetrics store (String storeName) {
+		StoreMetrics store = stores.get(storeName);
+		if (store == null) {
+			StoreMetrics created = new StoreMetrics();
+			store = stores.putIfAbsent(storeName, created);
+			if (store == null) {
+				store = created;
+			}
+		}
+		return store;
+	}
+
+	/** The metrics of one store. */
+	public static final class StoreMetrics {
+		private final LongAdder[] results = new LongAdder[VerificationResult.Status.values().length];
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder fallbacks = new LongAdder();
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		StoreMetrics () {
+			for (int i = 0; i < results.length; i++) {
+				results[i] = new LongAdder();
+			}
+		}
+
+		/** Returns the number of verifications with the given outcome. */
+		public long getCount (VerificationResult.Status status) {
+			return results[status.ordinal()].sum();
+		}
+
+		public long getValidCount () {
+			return getCount(VerificationResult.Status.VALID);
+		}
+
+		public long getInvalidCount () {
+			return getCount(VerificationResult.Status.INVALID);
+		}
+
+		/** Returns the number of verifications that could not be completed: retryable results, fallbacks and exceptions. */
+		public long getErrorCount () {
+			return getCount(VerificationResult.Status.RETRYABLE) + fallbacks.sum() + failures.sum();
+		}
+
+		/** Returns the number of verifications decided by a fallback, see {@link VerificationResult#isFallback()}. They are
+		 * not included in {@link #getCount(VerificationResult.Status)}. */
+		public long getFallbackCount () {
+			return fallbacks.sum();
+		}
+
+		/** Returns the number of verifications that threw an exception. */
+		public long getFailureCount () {
+			return failures.sum();
+		}
+
+		/** Returns the latencies of all verifications of the store, including failed ones. */
+		public LatencyHistogram getLatency () {
+			return latency;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A lock-free histogram of latencies in nanoseconds, in the manner of HdrHistogram: values are counted in buckets whose
+ * width grows with the value, so percentiles are reported with a relative error below 1/32 (about 3%) over the whole range
+ * of long values, at a fixed size of about 15 KB.
+ * <p>
+ * Recording is wait-free and can be done from any number of threads. Reads are not atomic across buckets: a percentile
+ * computed while values are recorded may or may not include those values. */
+public final class LatencyHistogram {
+
+	/** Number of buckets per power of two; determines the precision. */
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Values below this are counted exactly, one bucket per value. */
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + LINEAR_LIMIT - SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/** Records a latency; negative values are counted as 0. */
+	public void record (long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		count.increment();
+		sum.add(nanos);
+		long current = max.get();
+		while (nanos > current && !max.compareAndSet(current, nanos)) {
+			current = max.get();
+		}
+	}
+
+	/** Returns the number of recorded latencies. */
+	public long getCount () {
+		return count.sum();
+	}
+
+	/** Returns the highest recorded latency or 0 if none was recorded. */
+	public long getMax () {
+		return max.get();
+	}
+
+	/** Returns the mean of the recorded latencies or 0 if none was recorded. */
+	public double getMean () {
+		long n = count.sum();
+		return n == 0 ? 0 : (double)sum.sum() / n;
+	}
+
+	/** Returns the latency at or below which the given percentage of the recorded latencies lie, e.g. 99 for the 99th
+	 * percentile. The value is the upper end of the bucket the percentile falls into, capped at {@link #getMax()}.
+	 *
+	 * @param percentile The percentile, 0 to 100.
+	 * @return The latency in nanoseconds or 0 if none was recorded. */
+	public long getValueAtPercentile (double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/** Removes all recorded latencies. Latencies recorded concurrently may be partially kept. */
+	public void reset () {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	static int bucket (long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int)value;
+		}
+		// keep the highest SUB_BUCKET_BITS + 1 bits of the value
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+		return shift * SUB_BUCKETS + (int)(value >>> shift);
+	}
+
+	static long highestValue (int bucket) {
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		long highest = ((top + 1) << shift) - 1;
+		// the last bucket reaches up to Long.MAX_VALUE
+		return highest < 0 ? Long.MAX_VALUE : highest;
+	}
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.metrics;
+
+import com.badlogic.gdx.pay.server.VerificationResult;
+
+/** Receives the outcome of every verification dispatched by a {@link com.badlogic.gdx.pay.server.PurchaseVerifierManager}.
+ * <p>
+ * {@link InMemoryVerificationMetrics} keeps counters and latency histograms per store. To feed another system, e.g.
+ * Micrometer or JMX, implement this interface and forward the calls (e.g. to a Micrometer {@code Counter} and
+ * {@code Timer} tagged with the store name). Implementations are called on the verifying threads and must be thread-safe
+ * and fast: they must not block. */
+public interface VerificationMetrics {
+
+	/** Metrics that discard everything. */
+	VerificationMetrics NONE = new VerificationMetrics() {
+		@Override
+		public void recordResult (String storeName, VerificationResult.Status status, long latencyNanos) {
+		}
+
+		@Override
+		public void recordFailure (String storeName, Throwable error, long latencyNanos) {
+		}
+	};
+
+	/** Records a completed verification.
+	 *
+	 * @param storeName The store of the transaction.
+	 * @param status The verification outcome.
+	 * @param latencyNanos How long the verification took in nanoseconds. */
+	void recordResult (String storeName, VerificationResult.Status status, long latencyNanos);
+
+	/** Records a verification that failed with an exception instead of returning a result.
+	 *
+	 * @param storeName The store of the transaction.
+	 * @param error The exception thrown by the verifier.
+	 * @param latencyNanos How long the verification ran in nanoseconds. */
+	void recordFailure (String storeName, Throwable error, long latencyNanos);
+
+	/** Records a verification whose result was decided by a fallback because the store could not be asked, see
+	 * {@link VerificationResult#isFallback()}. By default it is recorded as {@link VerificationResult.Status#RETRYABLE}, never
+	 * with the status of the fallback result.
+	 *
+	 * @param storeName The store of the transaction.
+	 * @param status The status of the fallback result, e.g. {@link VerificationResult.Status#VALID} for
+	 *           {@link com.badlogic.gdx.pay.server.ResilientPurchaseVerifier.FailurePolicy#FAIL_OPEN}.
+	 * @param latencyNanos How long the verification took in nanoseconds. */
+	default void recordFallback (String storeName, VerificationResult.Status status, long latencyNanos) {
+		recordResult(storeName, VerificationResult.Status.RETRYABLE, latencyNanos);
+	}
+}
@@ -1,6 +1,14 @@
 package com.badlogic.gdx.pay.server.util;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 /*
  * Copyright 2009 Google Inc.
  * 
@@ -54,6 +62,8 @@ public final class Base64Util {
 		}
 	}
 
+	private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
 	// The line separator string of the operating system.
 	private static final String systemLineSeparator = "\n";
 
@@ -231,6 +241,25 @@ public final class Base64Util {
 		return decode(s.toCharArray(), inverseCharMap);
 	}
 
+	/** Decodes a byte array from Base64 format where the trailing padding may be omitted, as in the base64url segments of a
+	 * JSON Web Signature.
+	 * @param s A Base64 String to be decoded, with or without padding.
+	 * @param inverseCharMap charMap to use
+	 * @return An array containing the decoded data bytes.
+	 * @throws IllegalArgumentException If the input is not valid Base64 encoded data. */
+	public static byte[] decodeUnpadded (String s, CharMap inverseCharMap) {
+		int padding = (4 - s.length() % 4) % 4;
+		if (padding == 3) {
+			throw new IllegalArgumentException("Length of Base64 encoded input string is invalid.");
+		}
+		char[] in = new char[s.length() + padding];
+		s.getChars(0, s.length(), in, 0);
+		for (int i = s.length(); i < in.length; i++) {
+			in[i] = '=';
+		}
+		return decode(in, inverseCharMap);
+	}
+
 	public static byte[] decode (char[] in, byte[] inverseCharMap) {
 		return decode(in, 0, in.length, inverseCharMap);
 	}
@@ -299,6 +328,463 @@ public final class Base64Util {
 		return out;
 	}
 
+	/** Returns the number of bytes the Base64 encoded data decodes to. No blanks or line breaks are allowed within the data.
+	 * @param in The Base64 encoded data.
+	 * @throws IllegalArgumentException If the length of the input is not a multiple of 4. */
+	public static int decodedLength (CharSequence in) {
+		int iLen = in.length();
+		if (iLen % 4 != 0) {
+			throw new IllegalArgumentException("Length of Base64 encoded input string is not a multiple of 4.");
+		}
+		while (iLen > 0 && in.charAt(iLen - 1) == '=') {
+			iLen--;
+		}
+		return (iLen * 3) / 4;
+	}
+
+	/** Decodes Base64 data into a buffer without intermediate copies. No blanks or line breaks are allowed within the Base64
+	 * encoded input data.
+	 * @param in The Base64 encoded data, e.g. a String.
+	 * @param out The buffer to write to, starting at its position. Its position is advanced by the number of bytes decoded.
+	 * @return The number of bytes decoded.
+	 * @throws IllegalArgumentException If the input is not valid Base64 encoded data.
+	 * @throws java.nio.BufferOverflowException If the buffer has not enough space left. */
+	public static int decode (CharSequence in, ByteBuffer out) {
+		return decode(in, out, regularMap);
+	}
+
+	/** Decodes Base64 data into a buffer without intermediate copies, see {@link #decode(CharSequence, ByteBuffer)}.
+	 * @param inverseCharMap charMap to use */
+	public static int decode (CharSequence in, ByteBuffer out, CharMap inverseCharMap) {
+		int oLen = decodedLength(in);
+		if (out.remaining() < oLen) {
+			throw new BufferOverflowException();
+		}
+		byte[] map = inverseCharMap.decodingMap;
+		int iEnd = in.length();
+		while (iEnd > 0 && in.charAt(iEnd - 1) == '=') {
+			iEnd--;
+		}
+		if (out.hasArray()) {
+			int start = out.arrayOffset() + out.position();
+			byte[] dst = out.array();
+			int op = start;
+			int oEnd = start + oLen;
+			for (int ip = 0; ip < iEnd; ip += 4) {
+				int bits = quartet(in.charAt(ip), in.charAt(ip + 1), ip + 2 < iEnd ? in.charAt(ip + 2) : 'A',
+					ip + 3 < iEnd ? in.charAt(ip + 3) : 'A', map);
+				dst[op++] = (byte)(bits >>> 16);
+				if (op < oEnd) dst[op++] = (byte)(bits >>> 8);
+				if (op < oEnd) dst[op++] = (byte)bits;
+			}
+			out.position(out.position() + oLen);
+		} else {
+			int op = 0;
+			for (int ip = 0; ip < iEnd; ip += 4) {
+				int bits = quartet(in.charAt(ip), in.charAt(ip + 1), ip + 2 < iEnd ? in.charAt(ip + 2) : 'A',
+					ip + 3 < iEnd ? in.charAt(ip + 3) : 'A', map);
+				out.put((byte)(bits >>> 16));
+				if (++op < oLen) {
+					out.put((byte)(bits >>> 8));
+					op++;
+				}
+				if (op < oLen) {
+					out.put((byte)bits);
+					op++;
+				}
+			}
+		}
+		return oLen;
+	}
+
+	/** Decodes Base64 data given as ASCII bytes (e.g. straight from a network buffer) into a caller-provided array, without
+	 * intermediate copies. No blanks or line breaks are allowed within the Base64 encoded input data.
+	 * @param srcAscii An array containing the Base64 encoded data as ASCII characters.
+	 * @param off Offset of the first byte in <code>srcAscii</code> to be processed.
+	 * @param len Number of bytes to process in <code>srcAscii</code>, starting at <code>off</code>.
+	 * @param dst The array to write the decoded data to.
+	 * @param dstOff Offset in <code>dst</code> to start writing at.
+	 * @return The number of bytes decoded.
+	 * @throws IllegalArgumentException If the input is not valid Base64 encoded data.
+	 * @throws IndexOutOfBoundsException If <code>dst</code> has not enough space. */
+	public static int decode (byte[] srcAscii, int off, int len, byte[] dst, int dstOff) {
+		return decode(srcAscii, off, len, dst, dstOff, regularMap);
+	}
+
+	/** Decodes Base64 data given as ASCII bytes into a caller-provided array, see
+	 * {@link #decode(byte[], int, int, byte[], int)}.
+	 * @param inverseCharMap charMap to use */
+	public static int decode (byte[] srcAscii, int off, int len, byte[] dst, int dstOff, CharMap inverseCharMap) {
+		if (len % 4 != 0) {
+			throw new IllegalArgumentException("Length of Base64 encoded input string is not a multiple of 4.");
+		}
+		while (len > 0 && srcAscii[off + len - 1] == '=') {
+			len--;
+		}
+		int oLen = (len * 3) / 4;
+		if (dst.length - dstOff < oLen) {
+			throw new IndexOutOfBoundsException("Destination too small: " + oLen + " bytes needed.");
+		}
+		byte[] map = inverseCharMap.decodingMap;
+		int iEnd = off + len;
+		int op = dstOff;
+		int oEnd = dstOff + oLen;
+		for (int ip = off; ip < iEnd; ip += 4) {
+			int bits = quartet(srcAscii[ip] & 0xff, srcAscii[ip + 1] & 0xff, ip + 2 < iEnd ? srcAscii[ip + 2] & 0xff : 'A',
+				ip + 3 < iEnd ? srcAscii[ip + 3] & 0xff : 'A', map);
+			dst[op++] = (byte)(bits >>> 16);
+			if (op < oEnd) dst[op++] = (byte)(bits >>> 8);
+			if (op < oEnd) dst[op++] = (byte)bits;
+		}
+		return oLen;
+	}
+
+	/** Decodes four Base64 characters into 24 bits. */
+	private static int quartet (int c0, int c1, int c2, int c3, byte[] map) {
+		if ((c0 | c1 | c2 | c3) > 127) {
+			throw new IllegalArgumentException("Illegal character in Base64 encoded data.");
+		}
+		int b0 = map[c0];
+		int b1 = map[c1];
+		int b2 = map[c2];
+		int b3 = map[c3];
+		if ((b0 | b1 | b2 | b3) < 0) {
+			throw new IllegalArgumentException("Illegal character in Base64 encoded data.");
+		}
+		return (b0 << 18) | (b1 << 12) | (b2 << 6) | b3;
+	}
+
+	/** Returns a stream that Base64 encodes everything written to it into the given stream. No blanks or line breaks are
+	 * inserted. Call {@link EncodingOutputStream#finish()} or close the stream to write the final padded block.
+	 * @param out The stream to write the encoded characters to, as ASCII bytes. */
+	public static EncodingOutputStream encodingStream (OutputStream out) {
+		return new EncodingOutputStream(out, regularMap, 0, systemLineSeparator, EncodingOutputStream.DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Returns a stream that Base64 encodes everything written to it into the given stream, like {@link #encodeLines}.
+	 * @param out The stream to write the encoded characters to, as ASCII bytes.
+	 * @param charMap char map to use
+	 * @param lineLen Line length for the output data, a multiple of 4, or 0 to not break the output into lines.
+	 * @param lineSeparator The line separator to be used to separate the output lines. */
+	public static EncodingOutputStream encodingStream (OutputStream out, CharMap charMap, int lineLen, String lineSeparator) {
+		return new EncodingOutputStream(out, charMap, lineLen, lineSeparator, EncodingOutputStream.DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Returns a stream that decodes the Base64 encoded data read from the given stream. Blanks and line breaks within the
+	 * data are ignored, as with {@link #decodeLines(String)}; the padding may be omitted.
+	 * @param in The stream to read the encoded characters from, as ASCII bytes. */
+	public static DecodingInputStream decodingStream (InputStream in) {
+		return new DecodingInputStream(in, regularMap, DecodingInputStream.DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Returns a stream that decodes the Base64 encoded data read from the given stream, see {@link #decodingStream(InputStream)}.
+	 * @param inverseCharMap charMap to use */
+	public static DecodingInputStream decodingStream (InputStream in, CharMap inverseCharMap) {
+		return new DecodingInputStream(in, inverseCharMap, DecodingInputStream.DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Encodes the bytes written to it incrementally, collecting the encoded characters in a fixed-size buffer before passing
+	 * them on. Not thread-safe. */
+	public static final class EncodingOutputStream extends FilterOutputStream {
+
+		/** Default size of the output buffer. */
+		public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+		private final char[] map;
+		private final int lineLen;
+		private final byte[] lineSeparator;
+		private final byte[] buffer;
+		private int pos;
+		/** Characters written on the current line. */
+		private int column;
+		/** Input bytes not yet encoded because they do not form a full block of three. */
+		private int pendingBits;
+		private int pendingCount;
+		private boolean finished;
+
+		/** @param out The stream to write the encoded characters to, as ASCII bytes.
+		 * @param charMap char map to use
+		 * @param lineLen Line length for the output data, a multiple of 4, or 0 to not break the output into lines.
+		 * @param lineSeparator The line separator to be used to separate the output lines.
+		 * @param bufferSize Size of the output buffer. */
+		public EncodingOutputStream (OutputStream out, CharMap charMap, int lineLen, String lineSeparator, int bufferSize) {
+			super(out);
+			if (lineLen < 0 || lineLen % 4 != 0) {
+				throw new IllegalArgumentException("Line length must be a multiple of 4: " + lineLen);
+			}
+			this.map = charMap.encodingMap;
+			this.lineLen = lineLen;
+			this.lineSeparator = lineSeparator.getBytes(US_ASCII);
+			this.buffer = new byte[Math.max(bufferSize, 4 + this.lineSeparator.length)];
+		}
+
+		@Override
+		public void write (int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+
+		@Override
+		public void write (byte[] b, int off, int len) throws IOException {
+			if (finished) {
+				throw new IOException("Stream finished");
+			}
+			if (off < 0 || len < 0 || len > b.length - off) {
+				throw new IndexOutOfBoundsException();
+			}
+			int end = off + len;
+			// complete the block left over from the previous write
+			while (pendingCount > 0 && pendingCount < 3 && off < end) {
+				pendingBits = (pendingBits << 8) | (b[off++] & 0xff);
+				pendingCount++;
+			}
+			if (pendingCount == 3) {
+				putBlock(pendingBits);
+				pendingCount = 0;
+			} else if (pendingCount > 0) {
+				return;
+			}
+			while (end - off >= 3) {
+				putBlock(((b[off] & 0xff) << 16) | ((b[off + 1] & 0xff) << 8) | (b[off + 2] & 0xff));
+				off += 3;
+			}
+			while (off < end) {
+				pendingBits = (pendingBits << 8) | (b[off++] & 0xff);
+				pendingCount++;
+			}
+		}
+
+		/** Writes the encoded characters collected so far to the underlying stream and flushes it. Up to two bytes may stay
+		 * behind until more data or {@link #finish()} completes their block. */
+		@Override
+		public void flush () throws IOException {
+			drain();
+			out.flush();
+		}
+
+		/** Encodes the remaining bytes with padding and writes everything to the underlying stream, without closing it. Nothing
+		 * can be written afterwards. */
+		public void finish () throws IOException {
+			if (finished) {
+				return;
+			}
+			if (pendingCount > 0) {
+				int bits = pendingBits << (8 * (3 - pendingCount));
+				ensureSpace();
+				buffer[pos++] = (byte)map[(bits >>> 18) & 0x3f];
+				buffer[pos++] = (byte)map[(bits >>> 12) & 0x3f];
+				buffer[pos++] = (byte)(pendingCount == 2 ? map[(bits >>> 6) & 0x3f] : '=');
+				buffer[pos++] = '=';
+				column += 4;
+				pendingCount = 0;
+			}
+			if (column > 0) {
+				endLine();
+			}
+			finished = true;
+			drain();
+		}
+
+		/** Finishes the encoding and closes the underlying stream. */
+		@Override
+		public void close () throws IOException {
+			try {
+				finish();
+			} finally {
+				out.close();
+			}
+		}
+
+		private void putBlock (int bits) throws IOException {
+			ensureSpace();
+			buffer[pos++] = (byte)map[(bits >>> 18) & 0x3f];
+			buffer[pos++] = (byte)map[(bits >>> 12) & 0x3f];
+			buffer[pos++] = (byte)map[(bits >>> 6) & 0x3f];
+			buffer[pos++] = (byte)map[bits & 0x3f];
+			column += 4;
+			if (column == lineLen) {
+				endLine();
+			}
+		}
+
+		/** Adds a line separator; only called if there is room for a block and a separator. */
+		private void endLine () {
+			if (lineLen > 0) {
+				System.arraycopy(lineSeparator, 0, buffer, pos, lineSeparator.length);
+				pos += lineSeparator.length;
+			}
+			column = 0;
+		}
+
+		/** Makes room for a block of four characters and a line separator. */
+		private void ensureSpace () throws IOException {
+			if (buffer.length - pos < 4 + lineSeparator.length) {
+				drain();
+			}
+		}
+
+		private void drain () throws IOException {
+			if (pos > 0) {
+				out.write(buffer, 0, pos);
+				pos = 0;
+			}
+		}
+	}
+
+	/** Decodes Base64 data incrementally while reading it through a fixed-size buffer. Not thread-safe. Malformed input is
+	 * reported as {@link IOException}. */
+	public static final class DecodingInputStream extends FilterInputStream {
+
+		/** Default size of the read buffer. */
+		public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+		private final byte[] map;
+		private final byte[] buffer;
+		private int pos;
+		private int limit;
+		/** Sextets read but not yet decoded. */
+		private int bits;
+		private int count;
+		/** Decoded bytes not yet handed out, highest byte first. */
+		private int pendingBits;
+		private int pendingCount;
+		private boolean eof;
+
+		/** @param in The stream to read the encoded characters from, as ASCII bytes.
+		 * @param inverseCharMap charMap to use
+		 * @param bufferSize Size of the read buffer. */
+		public DecodingInputStream (InputStream in, CharMap inverseCharMap, int bufferSize) {
+			super(in);
+			this.map = inverseCharMap.decodingMap;
+			this.buffer = new byte[Math.max(bufferSize, 4)];
+		}
+
+		@Override
+		public int read () throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+		}
+
+		@Override
+		public int read (byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || len > b.length - off) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (len == 0) {
+				return 0;
+			}
+			int n = 0;
+			while (n < len) {
+				if (pendingCount > 0) {
+					pendingCount--;
+					b[off + n++] = (byte)(pendingBits >>> (8 * pendingCount));
+					continue;
+				}
+				if (eof) {
+					break;
+				}
+				if (pos == limit) {
+					// hand out what we have rather than block for more input
+					if (n > 0 && in.available() <= 0) {
+						break;
+					}
+					if (!fill()) {
+						endOfData();
+						continue;
+					}
+				}
+				int c = buffer[pos++] & 0xff;
+				if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+					continue;
+				}
+				if (c == '=') {
+					endOfData();
+					continue;
+				}
+				int sextet = c < 128 ? map[c] : -1;
+				if (sextet < 0) {
+					throw new IOException("Illegal character in Base64 encoded data.");
+				}
+				bits = (bits << 6) | sextet;
+				if (++count == 4) {
+					count = 0;
+					if (len - n >= 3) {
+						b[off + n++] = (byte)(bits >>> 16);
+						b[off + n++] = (byte)(bits >>> 8);
+						b[off + n++] = (byte)bits;
+					} else {
+						pendingBits = bits;
+						pendingCount = 3;
+					}
+				}
+			}
+			return n == 0 ? -1 : n;
+		}
+
+		@Override
+		public long skip (long n) throws IOException {
+			byte[] scratch = new byte[(int)Math.min(Math.max(n, 0), 512)];
+			long skipped = 0;
+			while (skipped < n) {
+				int read = read(scratch, 0, (int)Math.min(n - skipped, scratch.length));
+				if (read == -1) {
+					break;
+				}
+				skipped += read;
+			}
+			return skipped;
+		}
+
+		/** Returns the number of decoded bytes that can be read without reading from the underlying stream. */
+		@Override
+		public int available () throws IOException {
+			return pendingCount;
+		}
+
+		@Override
+		public boolean markSupported () {
+			return false;
+		}
+
+		@Override
+		public synchronized void mark (int readlimit) {
+		}
+
+		@Override
+		public synchronized void reset () throws IOException {
+			throw new IOException("mark/reset not supported");
+		}
+
+		/** Decodes the last, incomplete block at the padding or the end of the input. Anything after the padding is ignored. */
+		private void endOfData () throws IOException {
+			eof = true;
+			switch (count) {
+				case 0:
+					break;
+				case 2:
+					pendingBits = bits >>> 4;
+					pendingCount = 1;
+					break;
+				case 3:
+					pendingBits = bits >>> 2;
+					pendingCount = 2;
+					break;
+				default:
+					throw new IOException("Length of Base64 encoded input is not a multiple of 4.");
+			}
+			count = 0;
+		}
+
+		private boolean fill () throws IOException {
+			int read = in.read(buffer, 0, buffer.length);
+			if (read <= 0) {
+				return false;
+			}
+			pos = 0;
+			limit = read;
+			return true;
+		}
+	}
+
 	// Dummy constructor.
 	private Base64Util () {
 	}
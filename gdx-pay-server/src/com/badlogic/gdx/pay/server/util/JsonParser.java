@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/** A minimal JSON parser, so the server module does not need a JSON library. Objects are returned as {@link Map}, arrays as
+ * {@link List}, numbers as {@link Long} or {@link Double}, plus {@link String}, {@link Boolean} and null.
+ * <p>
+ * Documents are read with {@link JsonStreamReader}, so input may be nested at most {@link #MAX_DEPTH} levels deep; deeper
+ * input is rejected instead of exhausting the stack. */
+public final class JsonParser {
+
+	/** The maximum nesting depth of objects and arrays. */
+	public static final int MAX_DEPTH = JsonStreamReader.MAX_DEPTH;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private JsonParser () {
+	}
+
+	/** Parses a JSON document.
+	 * @param json The JSON text.
+	 * @return The parsed value.
+	 * @throws IllegalArgumentException If the input is not valid JSON. */
+	public static Object parse (String json) {
+		byte[] bytes = json.getBytes(UTF_8);
+		try {
+			JsonStreamReader reader = new JsonStreamReader(new ByteArrayInputStream(bytes),
+				new byte[Math.max(1, Math.min(bytes.length, JsonStreamReader.DEFAULT_BUFFER_SIZE))]);
+			if (reader.peek() == JsonStreamReader.Token.END_DOCUMENT) {
+				throw new IllegalArgumentException("Malformed JSON: Unexpected end of input");
+			}
+			Object value = reader.nextValue();
+			if (reader.peek() != JsonStreamReader.Token.END_DOCUMENT) {
+				throw new IllegalArgumentException("Malformed JSON: Unexpected trailing characters");
+			}
+			return value;
+		} catch (IOException e) {
+			// the input is in memory, so this is a syntax error
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/** Parses a JSON document that must be an object.
+	 * @throws IllegalArgumentException If the input is not a valid JSON object. */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> parseObject (String json) {
+		Object value = parse(json);
+		if (!(value instanceof Map)) {
+			throw new IllegalArgumentException("JSON is not an object");
+		}
+		return (Map<String, Object>)value;
+	}
+}
@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A streaming pull reader for JSON, reading bytes straight from an {@link InputStream} into a fixed-size buffer.
+ * <p>
+ * Values the caller is not interested in are passed over with {@link #skipValue()} without creating strings, so only a few
+ * fields can be picked from a large document (e.g. an Apple verifyReceipt response of several hundred kilobytes) at the cost
+ * of a single buffer. The placement of ',' and ':' is validated, except inside skipped values.
+ * <p>
+ * Input may come from anyone, so objects and arrays may be nested at most {@link #MAX_DEPTH} levels deep; deeper input is
+ * rejected instead of exhausting the stack of callers that recurse, such as {@link #nextValue()}.
+ *
+ * <pre>
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *   String name = reader.nextName();
+ *   if (name.equals("status")) status = (int)reader.nextLong();
+ *   else reader.skipValue();
+ * }
+ * reader.endObject();
+ * </pre> */
+public final class JsonStreamReader {
+
+	/** Default size of the read buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** The maximum nesting depth of objects and arrays. */
+	public static final int MAX_DEPTH = 128;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** The kinds of tokens. */
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	// what is expected next in the current scope
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	/** A member name was peeked or read, its ':' and value follow. */
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	/** Marks that the next token has not been peeked yet. */
+	private static final int NOT_PEEKED = -2;
+
+	private final InputStream in;
+	private final byte[] buffer;
+	private int pos;
+	private int limit;
+	/** Bytes consumed by buffers before the current one, for error positions. */
+	private long offset;
+
+	private final int[] scopes = new int[MAX_DEPTH + 1];
+	private int depth;
+	/** The first byte of the next token once its separator is consumed, -1 at the end, or {@link #NOT_PEEKED}. */
+	private int peeked = NOT_PEEKED;
+
+	/** Scratch space for decoded strings and numbers, grown as needed. */
+	private byte[] scratch = new byte[64];
+	private int scratchLength;
+
+	public JsonStreamReader (InputStream in) {
+		this(in, new byte[DEFAULT_BUFFER_SIZE]);
+	}
+
+	/** @param in The stream to read from. It is not closed by the reader.
+	 * @param buffer The read buffer, which may be reused by the caller once this reader is done. */
+	public JsonStreamReader (InputStream in, byte[] buffer) {
+		this.in = in;
+		this.buffer = buffer;
+		scopes[0] = EMPTY_DOCUMENT;
+	}
+
+	/** Returns the type of the next token without consuming it. */
+	public Token peek () throws IOException {
+		int c = doPeek();
+		switch (c) {
+			case -1: return Token.END_DOCUMENT;
+			case '{': return Token.BEGIN_OBJECT;
+			case '}': return Token.END_OBJECT;
+			case '[': return Token.BEGIN_ARRAY;
+			case ']': return Token.END_ARRAY;
+			case '"': return Token.STRING;
+			case 't':
+			case 'f': return Token.BOOLEAN;
+			case 'n': return Token.NULL;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) return Token.NUMBER;
+				throw syntaxError("Unexpected character '" + (char)c + "'");
+		}
+	}
+
+	/** Returns true if the current object or array has more elements. */
+	public boolean hasNext () throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginObject () throws IOException {
+		expectValue('{');
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject () throws IOException {
+		expectEnd('}', EMPTY_OBJECT, NONEMPTY_OBJECT);
+	}
+
+	public void beginArray () throws IOException {
+		expectValue('[');
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray () throws IOException {
+		expectEnd(']', EMPTY_ARRAY, NONEMPTY_ARRAY);
+	}
+
+	/** Reads the name of the next object member. */
+	public String nextName () throws IOException {
+		if (doPeek() != '"' || scopes[depth] != DANGLING_NAME) {
+			throw syntaxError("Expected a name");
+		}
+		pos++;
+		peeked = NOT_PEEKED;
+		readString(true);
+		return new String(scratch, 0, scratchLength, UTF_8);
+	}
+
+	public String nextString () throws IOException {
+		expectValue('"');
+		readString(true);
+		return new String(scratch, 0, scratchLength, UTF_8);
+	}
+
+	/** Reads an integral number without creating intermediate strings. Also accepts numbers in quotes, as Apple sends most
+	 * numeric receipt fields as strings. */
+	public long nextLong () throws IOException {
+		boolean quoted = peekValue() == '"';
+		peeked = NOT_PEEKED;
+		if (quoted) pos++;
+		int c = peekByteRaw();
+		boolean negative = c == '-';
+		if (negative) {
+			pos++;
+			c = peekByteRaw();
+		}
+		if (c < '0' || c > '9') {
+			throw syntaxError("Expected a number");
+		}
+		long value = 0;
+		while (c >= '0' && c <= '9') {
+			value = value * 10 + (c - '0');
+			pos++;
+			c = peekByteRaw();
+		}
+		if (c == '.' || c == 'e' || c == 'E') {
+			throw syntaxError("Expected an integral number");
+		}
+		if (quoted) {
+			if (c != '"') throw syntaxError("Expected '\"'");
+			pos++;
+		}
+		return negative ? -value : value;
+	}
+
+	public boolean nextBoolean () throws IOException {
+		int c = peekValue();
+		peeked = NOT_PEEKED;
+		if (c == 't') {
+			expectLiteral("true");
+			return true;
+		}
+		expectLiteral("false");
+		return false;
+	}
+
+	public void nextNull () throws IOException {
+		peekValue();
+		peeked = NOT_PEEKED;
+		expectLiteral("null");
+	}
+
+	/** Reads the next value as {@link Map}, {@link List}, {@link String}, {@link Long}, {@link Double}, {@link Boolean} or
+	 * null, like {@link JsonParser}. Use for small sub-trees only. */
+	public Object nextValue () throws IOException {
+		switch (peek()) {
+			case BEGIN_OBJECT:
+				Map<String, Object> object = new LinkedHashMap<String, Object>();
+				beginObject();
+				while (hasNext()) {
+					String name = nextName();
+					object.put(name, nextValue());
+				}
+				endObject();
+				return object;
+			case BEGIN_ARRAY:
+				List<Object> array = new ArrayList<Object>();
+				beginArray();
+				while (hasNext()) {
+					array.add(nextValue());
+				}
+				endArray();
+				return array;
+			case STRING: return nextString();
+			case BOOLEAN: return nextBoolean();
+			case NULL: nextNull(); return null;
+			case NUMBER: return readNumber();
+			default: throw syntaxError("Expected a value");
+		}
+	}
+
+	/** Skips the next value including all nested values, without decoding it. */
+	public void skipValue () throws IOException {
+		int first = peekValue();
+		if (first == '}' || first == ']' || first == -1) {
+			throw syntaxError("Expected a value");
+		}
+		peeked = NOT_PEEKED;
+		int nesting = 0;
+		do {
+			int c = skipWhitespace();
+			switch (c) {
+				case -1: throw syntaxError("Unexpected end of input");
+				case '{':
+				case '[': pos++; nesting++; break;
+				case '}':
+				case ']': pos++; nesting--; break;
+				case '"': pos++; readString(false); break;
+				case ',':
+				case ':': pos++; break;
+				default:
+					// number or literal: skip up to the next structural character
+					pos++;
+					while ((c = peekByteRaw()) != -1 && c != ',' && c != ':' && c != '}' && c != ']' && c > ' ') {
+						pos++;
+					}
+			}
+		} while (nesting > 0);
+	}
+
+	private Object readNumber () throws IOException {
+		peekValue();
+		peeked = NOT_PEEKED;
+		scratchLength = 0;
+		boolean integral = true;
+		int c;
+		while ((c = peekByteRaw()) != -1 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'))) {
+			if (c == '.' || c == 'e' || c == 'E') integral = false;
+			appendScratch(c);
+			pos++;
+		}
+		String number = new String(scratch, 0, scratchLength, UTF_8);
+		try {
+			return integral ? (Object)Long.valueOf(number) : (Object)Double.valueOf(number);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Invalid number '" + number + "'");
+		}
+	}
+
+	/** Reads the rest of a string after the opening quote, optionally decoding it into the scratch space. */
+	private void readString (boolean decode) throws IOException {
+		scratchLength = 0;
+		while (true) {
+			if (pos == limit && !fill()) {
+				throw syntaxError("Unterminated string");
+			}
+			int c = buffer[pos++] & 0xff;
+			if (c == '"') {
+				return;
+			}
+			if (c != '\\') {
+				if (decode) appendScratch(c);
+				continue;
+			}
+			int escaped = readRaw();
+			if (!decode) {
+				continue;
+			}
+			if (escaped != 'u') {
+				appendEscape(escaped);
+				continue;
+			}
+			int codePoint = readHex4();
+			if (!Character.isHighSurrogate((char)codePoint) || peekByteRaw() != '\\') {
+				appendUtf8(codePoint);
+				continue;
+			}
+			// a surrogate pair is written as two escapes; only the backslash is peeked, anything else stays unread
+			pos++;
+			escaped = readRaw();
+			if (escaped != 'u') {
+				appendUtf8(codePoint);
+				appendEscape(escaped);
+				continue;
+			}
+			int low = readHex4();
+			if (Character.isLowSurrogate((char)low)) {
+				appendUtf8(Character.toCodePoint((char)codePoint, (char)low));
+			} else {
+				appendUtf8(codePoint);
+				appendUtf8(low);
+			}
+		}
+	}
+
+	/** Appends the character for an escape other than a unicode escape. */
+	private void appendEscape (int escaped) {
+		switch (escaped) {
+			case 'b': appendScratch('\b'); break;
+			case 'f': appendScratch('\f'); break;
+			case 'n': appendScratch('\n'); break;
+			case 'r': appendScratch('\r'); break;
+			case 't': appendScratch('\t'); break;
+			default: appendScratch(escaped);
+		}
+	}
+
+	private int readHex4 () throws IOException {
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			int digit = Character.digit(readRaw(), 16);
+			if (digit < 0) throw syntaxError("Invalid unicode escape");
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	private void appendUtf8 (int codePoint) {
+		if (codePoint < 0x80) {
+			appendScratch(codePoint);
+		} else if (codePoint < 0x800) {
+			appendScratch(0xc0 | (codePoint >> 6));
+			appendScratch(0x80 | (codePoint & 0x3f));
+		} else if (codePoint < 0x10000) {
+			appendScratch(0xe0 | (codePoint >> 12));
+			appendScratch(0x80 | ((codePoint >> 6) & 0x3f));
+			appendScratch(0x80 | (codePoint & 0x3f));
+		} else {
+			appendScratch(0xf0 | (codePoint >> 18));
+			appendScratch(0x80 | ((codePoint >> 12) & 0x3f));
+			appendScratch(0x80 | ((codePoint >> 6) & 0x3f));
+			appendScratch(0x80 | (codePoint & 0x3f));
+		}
+	}
+
+	private void appendScratch (int b) {
+		if (scratchLength == scratch.length) {
+			byte[] grown = new byte[scratch.length * 2];
+			System.arraycopy(scratch, 0, grown, 0, scratchLength);
+			scratch = grown;
+		}
+		scratch[scratchLength++] = (byte)b;
+	}
+
+	/** Consumes the separator before the next token as required by the current scope and returns the token's first byte
+	 * without consuming it, or -1 at the end of the input. */
+	private int doPeek () throws IOException {
+		if (peeked != NOT_PEEKED) {
+			return peeked;
+		}
+		int c = skipWhitespace();
+		switch (scopes[depth]) {
+			case EMPTY_DOCUMENT:
+				scopes[depth] = NONEMPTY_DOCUMENT;
+				break;
+			case EMPTY_ARRAY:
+				scopes[depth] = NONEMPTY_ARRAY;
+				break;
+			case NONEMPTY_ARRAY:
+				if (c == ']' || c == -1) break;
+				if (c != ',') throw syntaxError("Expected ',' or ']'");
+				pos++;
+				c = skipWhitespace();
+				if (c == ']') throw syntaxError("Expected a value");
+				break;
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				if (c == '}' || c == -1) break;
+				if (scopes[depth] == NONEMPTY_OBJECT) {
+					if (c != ',') throw syntaxError("Expected ',' or '}'");
+					pos++;
+					c = skipWhitespace();
+				}
+				if (c != '"') throw syntaxError("Expected a name");
+				scopes[depth] = DANGLING_NAME;
+				break;
+			case DANGLING_NAME:
+				if (c != ':') throw syntaxError("Expected ':'");
+				pos++;
+				c = skipWhitespace();
+				scopes[depth] = NONEMPTY_OBJECT;
+				break;
+		}
+		peeked = c;
+		return c;
+	}
+
+	/** Peeks the next token, which must be a value and not a member name. */
+	private int peekValue () throws IOException {
+		int c = doPeek();
+		if (scopes[depth] == DANGLING_NAME) {
+			throw syntaxError("Expected ':'");
+		}
+		return c;
+	}
+
+	private void expectValue (char c) throws IOException {
+		if (peekValue() != c) {
+			throw syntaxError("Expected '" + c + "'");
+		}
+		pos++;
+		peeked = NOT_PEEKED;
+	}
+
+	private void expectEnd (char c, int emptyScope, int nonEmptyScope) throws IOException {
+		int scope = scopes[depth];
+		if (doPeek() != c || (scope != emptyScope && scope != nonEmptyScope)) {
+			throw syntaxError("Expected '" + c + "'");
+		}
+		pos++;
+		peeked = NOT_PEEKED;
+		depth--;
+	}
+
+	private void push (int scope) throws IOException {
+		if (depth == MAX_DEPTH) {
+			throw syntaxError("Nesting deeper than " + MAX_DEPTH + " levels");
+		}
+		scopes[++depth] = scope;
+	}
+
+	private void expectLiteral (String literal) throws IOException {
+		for (int i = 0; i < literal.length(); i++) {
+			if (readRaw() != literal.charAt(i)) {
+				throw syntaxError("Expected '" + literal + "'");
+			}
+		}
+	}
+
+	/** Returns the next byte that is not whitespace, without consuming it, or -1 at the end. */
+	private int skipWhitespace () throws IOException {
+		while (true) {
+			if (pos == limit && !fill()) {
+				return -1;
+			}
+			int c = buffer[pos];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+				return c & 0xff;
+			}
+			pos++;
+		}
+	}
+
+	/** Returns the next byte without consuming it, or -1 at the end. */
+	private int peekByteRaw () throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos] & 0xff;
+	}
+
+	private int readRaw () throws IOException {
+		if (pos == limit && !fill()) {
+			throw syntaxError("Unexpected end of input");
+		}
+		return buffer[pos++] & 0xff;
+	}
+
+	private boolean fill () throws IOException {
+		int read = in.read(buffer, 0, buffer.length);
+		if (read <= 0) {
+			return false;
+		}
+		offset += limit;
+		pos = 0;
+		limit = read;
+		return true;
+	}
+
+	private IOException syntaxError (String message) {
+		return new IOException("Malformed JSON: " + message + " at position " + (offset + pos));
+	}
+}
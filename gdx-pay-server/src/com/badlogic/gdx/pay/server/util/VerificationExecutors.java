@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.util;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Factory for the executors used to run purchase verifications asynchronously.
+ * <p>
+ * On JDK 21+ the default executor starts a virtual thread per verification, so thousands of verifications blocking on
+ * network I/O can be in flight without tying up thousands of platform threads. On older JDKs a bounded pool of daemon
+ * threads is used instead, which rejects verifications once its threads and queue are exhausted. */
+public final class VerificationExecutors {
+
+	/** Default maximum number of threads for the bounded fallback pool. */
+	public static final int DEFAULT_MAX_THREADS = 64;
+	/** Default number of queued verifications for the bounded fallback pool. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/** Returns the executor shared by all verifiers that were not given an executor explicitly. It lives as long as the
+	 * process: {@link ExecutorService#shutdown()} and {@link ExecutorService#shutdownNow()} throw an
+	 * {@link UnsupportedOperationException}. */
+	public static ExecutorService shared () {
+		return SharedHolder.EXECUTOR;
+	}
+
+	/** Creates a virtual-thread-per-task executor if the running JDK supports it (JDK 21+), otherwise a bounded pool with
+	 * {@link #DEFAULT_MAX_THREADS} threads and a queue of {@link #DEFAULT_QUEUE_CAPACITY} entries. */
+	public static ExecutorService newDefaultExecutor () {
+		ExecutorService executor = newVirtualThreadExecutor();
+		if (executor != null) {
+			return executor;
+		}
+		return newBoundedExecutor(DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/** Creates a virtual-thread-per-task executor.
+	 *
+	 * @return The executor or null if virtual threads are not supported by the running JDK. */
+	public static ExecutorService newVirtualThreadExecutor () {
+		try {
+			// looked up reflectively: we still compile against Java 8
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/** Creates a bounded pool of daemon threads. If both the threads and the queue are exhausted the verification is rejected
+	 * with a {@link java.util.concurrent.RejectedExecutionException}, so the submitting thread is never blocked. The
+	 * asynchronous verification then fails, see {@link com.badlogic.gdx.pay.server.PurchaseVerifier}.
+	 *
+	 * @param maxThreads The maximum number of threads.
+	 * @param queueCapacity The maximum number of queued verifications. */
+	public static ExecutorService newBoundedExecutor (int maxThreads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<Runnable>(queueCapacity), new DaemonThreadFactory("gdx-pay-verifier"),
+			new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static final class SharedHolder {
+		static final ExecutorService EXECUTOR = new SharedExecutor(newDefaultExecutor());
+	}
+
+	/** Hands tasks to the process-wide executor, but does not let any one user shut it down for all the others. */
+	private static final class SharedExecutor extends AbstractExecutorService {
+		private final ExecutorService executor;
+
+		SharedExecutor (ExecutorService executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public void execute (Runnable command) {
+			executor.execute(command);
+		}
+
+		@Override
+		public void shutdown () {
+			throw new UnsupportedOperationException("The shared verification executor cannot be shut down");
+		}
+
+		@Override
+		public List<Runnable> shutdownNow () {
+			throw new UnsupportedOperationException("The shared verification executor cannot be shut down");
+		}
+
+		@Override
+		public boolean isShutdown () {
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated () {
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination (long timeout, TimeUnit unit) throws InterruptedException {
+			unit.sleep(timeout);
+			return false;
+		}
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		DaemonThreadFactory (String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread (Runnable runnable) {
+			Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	// Dummy constructor.
+	private VerificationExecutors () {
+	}
+}
@@ -0,0 +1,49 @@
+package com.badlogic.gdx.pay.server;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class BulkheadTest {
+
+    @Test
+    public void queuedTasksRefusedByExecutorAreRejectedOneAfterTheOther() throws Exception {
+        final int queued = 100000;
+        Bulkhead bulkhead = Bulkhead.newBuilder().maxConcurrent(1).maxQueued(queued).build();
+        final AtomicBoolean started = new AtomicBoolean();
+        final CountDownLatch refused = new CountDownLatch(queued);
+        final CountDownLatch release = new CountDownLatch(1);
+        // runs the first task on its own thread, then refuses all others
+        Executor executor = bulkhead.executor(task -> {
+            if (started.compareAndSet(false, true)) {
+                new Thread(task).start();
+            } else {
+                throw new RejectedExecutionException("shut down");
+            }
+        }, e -> refused.countDown());
+
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < queued; i++) {
+            executor.execute(() -> fail("refused task must not run"));
+        }
+        assertEquals(queued, bulkhead.getQueuedCount());
+        release.countDown();
+
+        assertTrue(refused.await(10, TimeUnit.SECONDS));
+        assertEquals(queued, bulkhead.getRejectedCount());
+        assertEquals(0, bulkhead.getQueuedCount());
+        assertEquals(0, bulkhead.getActiveCount());
+    }
+}
@@ -0,0 +1,142 @@
+package com.badlogic.gdx.pay.server;
+
+import com.badlogic.gdx.pay.Transaction;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CachingPurchaseVerifierTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /** Answers according to the order id: "valid", "invalid" or "retryable". */
+    private final PurchaseVerifier store = new PurchaseVerifier() {
+        @Override
+        public String storeName() {
+            return "store";
+        }
+
+        @Override
+        public boolean isValid(Transaction transaction) {
+            return verify(transaction).isValid();
+        }
+
+        @Override
+        public VerificationResult verify(Transaction transaction) {
+            calls.incrementAndGet();
+            if ("valid".equals(transaction.getOrderId())) {
+                return VerificationResult.valid();
+            }
+            if ("invalid".equals(transaction.getOrderId())) {
+                return VerificationResult.invalid();
+            }
+            return VerificationResult.retryable("Receipt server unavailable");
+        }
+    };
+
+    @Test
+    public void servesValidResultsUntilTheyExpire() throws Exception {
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(store, 100, 50, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(verifier.verify(transaction("valid")).isValid());
+        assertTrue(verifier.verify(transaction("valid")).isValid());
+        assertEquals(1, calls.get());
+        assertEquals(1, verifier.getHitCount());
+
+        Thread.sleep(100);
+
+        assertTrue(verifier.verify(transaction("valid")).isValid());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void cachesInvalidResultsForTheNegativeTtl() throws Exception {
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(store, 100, TimeUnit.HOURS.toMillis(1), 50,
+                TimeUnit.MILLISECONDS);
+
+        assertFalse(verifier.verify(transaction("invalid")).isValid());
+        assertFalse(verifier.verify(transaction("invalid")).isValid());
+        assertEquals(1, calls.get());
+
+        Thread.sleep(100);
+
+        assertFalse(verifier.verify(transaction("invalid")).isValid());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void doesNotCacheInvalidResultsWithoutNegativeTtl() {
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(store, 100, 1, 0, TimeUnit.HOURS);
+
+        verifier.verify(transaction("invalid"));
+        verifier.verify(transaction("invalid"));
+
+        assertEquals(2, calls.get());
+        assertEquals(0, verifier.size());
+    }
+
+    @Test
+    public void doesNotCacheRetryableResults() {
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(store, 100, 1, 1, TimeUnit.HOURS);
+
+        assertTrue(verifier.verify(transaction("retryable")).isRetryable());
+        assertTrue(verifier.verify(transaction("retryable")).isRetryable());
+
+        assertEquals(2, calls.get());
+        assertEquals(0, verifier.size());
+    }
+
+    @Test
+    public void doesNotCacheFailOpenFallback() {
+        ResilientPurchaseVerifier resilient = ResilientPurchaseVerifier.newBuilder()
+                .verifier(store)
+                .maxAttempts(1)
+                .failurePolicy(ResilientPurchaseVerifier.FailurePolicy.FAIL_OPEN)
+                .build();
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(resilient, 100, 1, 1, TimeUnit.HOURS);
+
+        VerificationResult first = verifier.verify(transaction("retryable"));
+        assertTrue(first.isValid());
+        assertTrue(first.isFallback());
+        assertTrue(verifier.verify(transaction("retryable")).isFallback());
+
+        assertEquals(2, calls.get());
+        assertEquals(0, verifier.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntry() {
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(store, 1, 1, 1, TimeUnit.HOURS);
+
+        verifier.verify(transaction("valid"));
+        verifier.verify(transaction("invalid"));
+        verifier.verify(transaction("valid"));
+
+        assertEquals(3, calls.get());
+        assertEquals(1, verifier.size());
+    }
+
+    @Test
+    public void batchPassesOnlyMissesToTheDelegate() {
+        CachingPurchaseVerifier verifier = new CachingPurchaseVerifier(store, 100, 1, 1, TimeUnit.HOURS);
+        verifier.verify(transaction("valid"));
+
+        List<VerificationResult> results = verifier.verifyBatch(Arrays.asList(transaction("valid"), transaction("invalid")));
+
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        assertEquals(2, calls.get());
+    }
+
+    private static Transaction transaction(String orderId) {
+        final Transaction transaction = new Transaction();
+        transaction.setStoreName("store");
+        transaction.setOrderId(orderId);
+        return transaction;
+    }
+}
@@ -0,0 +1,147 @@
+package com.badlogic.gdx.pay.server;
+
+import com.badlogic.gdx.pay.Transaction;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CoalescingPurchaseVerifierTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final CoalescingPurchaseVerifier verifier = new CoalescingPurchaseVerifier(new PurchaseVerifier() {
+        @Override
+        public String storeName() {
+            return "store";
+        }
+
+        @Override
+        public boolean isValid(Transaction transaction) {
+            return verify(transaction).isValid();
+        }
+
+        @Override
+        public VerificationResult verify(Transaction transaction) {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if ("error".equals(transaction.getOrderId())) {
+                throw new StackOverflowError();
+            }
+            return VerificationResult.of("valid".equals(transaction.getOrderId()));
+        }
+    });
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentVerificationsShareOneCall() throws Exception {
+        Future<VerificationResult> first = executor.submit(() -> verifier.verify(transaction("valid")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<VerificationResult> second = executor.submit(() -> verifier.verify(transaction("valid")));
+        while (verifier.getCoalescedCount() < 1) {
+            Thread.sleep(1);
+        }
+        CompletableFuture<VerificationResult> async = verifier.isValidAsync(transaction("valid"), executor).toCompletableFuture();
+
+        release.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isValid());
+        assertTrue(second.get(5, TimeUnit.SECONDS).isValid());
+        assertTrue(async.get(5, TimeUnit.SECONDS).isValid());
+        assertEquals(1, calls.get());
+        assertEquals(2, verifier.getCoalescedCount());
+        assertEquals(0, verifier.getInFlightCount());
+    }
+
+    @Test
+    public void errorIsPassedToWaitingCallers() throws Exception {
+        Future<VerificationResult> first = executor.submit(() -> verifier.verify(transaction("error")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<VerificationResult> second = executor.submit(() -> verifier.verify(transaction("error")));
+        while (verifier.getCoalescedCount() < 1) {
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+
+        for (Future<VerificationResult> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof StackOverflowError);
+            }
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, verifier.getInFlightCount());
+    }
+
+    @Test
+    public void differentTransactionsAreNotShared() {
+        release.countDown();
+
+        List<VerificationResult> results = verifier.verifyBatch(Arrays.asList(transaction("valid"),
+                transaction("forged"), transaction("valid")));
+
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        assertTrue(results.get(2).isValid());
+        assertEquals(2, calls.get());
+        assertEquals(1, verifier.getCoalescedCount());
+    }
+
+    @Test
+    public void transactionsDifferingInProductOrTokenAreNotShared() {
+        release.countDown();
+        Transaction token1 = transaction("valid");
+        token1.setIdentifier("coins");
+        token1.setRequestId("token-1");
+        Transaction token2 = transaction("valid");
+        token2.setIdentifier("coins");
+        token2.setRequestId("token-2");
+        Transaction otherProduct = transaction("valid");
+        otherProduct.setIdentifier("gems");
+        otherProduct.setRequestId("token-1");
+
+        verifier.verifyBatch(Arrays.asList(token1, token2, otherProduct));
+
+        assertEquals(3, calls.get());
+        assertEquals(0, verifier.getCoalescedCount());
+        assertNotEquals(TransactionKeys.of(token1), TransactionKeys.of(token2));
+        Transaction same = transaction("valid");
+        same.setIdentifier("coins");
+        same.setRequestId("token-1");
+        assertEquals(TransactionKeys.of(token1), TransactionKeys.of(same));
+    }
+
+    private static Transaction transaction(String orderId) {
+        final Transaction transaction = new Transaction();
+        transaction.setStoreName("store");
+        transaction.setOrderId(orderId);
+        return transaction;
+    }
+}
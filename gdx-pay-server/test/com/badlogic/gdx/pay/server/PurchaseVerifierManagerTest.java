@@ -0,0 +1,298 @@
+package com.badlogic.gdx.pay.server;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.metrics.InMemoryVerificationMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PurchaseVerifierManagerTest {
+
+    private final CountDownLatch slowStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseSlow = new CountDownLatch(1);
+
+    private ExecutorService executor;
+    private PurchaseVerifierManager manager;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        manager = new PurchaseVerifierManager();
+        manager.setExecutor(executor);
+        manager.addVerifier(new PurchaseVerifier() {
+            @Override
+            public String storeName() {
+                return "slow";
+            }
+
+            @Override
+            public boolean isValid(Transaction transaction) {
+                return verify(transaction).isValid();
+            }
+
+            @Override
+            public VerificationResult verify(Transaction transaction) {
+                slowStarted.countDown();
+                try {
+                    releaseSlow.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return VerificationResult.valid();
+            }
+        });
+        manager.addVerifier(new PurchaseVerifier() {
+            @Override
+            public String storeName() {
+                return "fast";
+            }
+
+            @Override
+            public boolean isValid(Transaction transaction) {
+                return true;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        releaseSlow.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void bulkheadRejectsWhenFull() throws Exception {
+        Bulkhead bulkhead = Bulkhead.newBuilder().maxConcurrent(1).maxQueued(1).build();
+        manager.setBulkhead("slow", bulkhead);
+
+        CompletableFuture<VerificationResult> running = manager.isValidAsync(transaction("slow")).toCompletableFuture();
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<VerificationResult> queued = manager.isValidAsync(transaction("slow")).toCompletableFuture();
+        VerificationResult rejected = manager.isValidAsync(transaction("slow")).toCompletableFuture().get();
+
+        assertEquals(VerificationResult.Status.RETRYABLE, rejected.getStatus());
+        assertEquals(1, bulkhead.getActiveCount());
+        assertEquals(1, bulkhead.getQueuedCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+
+        // the other store is not held up
+        assertTrue(manager.isValidAsync(transaction("fast")).toCompletableFuture().get(5, TimeUnit.SECONDS).isValid());
+
+        releaseSlow.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS).isValid());
+        assertTrue(queued.get(5, TimeUnit.SECONDS).isValid());
+        assertEquals(0, bulkhead.getQueuedCount());
+    }
+
+    @Test
+    public void queuedVerificationRefusedByExecutorIsRejected() throws Exception {
+        final AtomicInteger submitted = new AtomicInteger();
+        manager.setExecutor(task -> {
+            if (submitted.getAndIncrement() > 0) {
+                throw new RejectedExecutionException("shut down");
+            }
+            executor.execute(task);
+        });
+        Bulkhead bulkhead = Bulkhead.newBuilder().maxConcurrent(1).maxQueued(1).build();
+        manager.setBulkhead("slow", bulkhead);
+
+        CompletableFuture<VerificationResult> running = manager.isValidAsync(transaction("slow")).toCompletableFuture();
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<VerificationResult> queued = manager.isValidAsync(transaction("slow")).toCompletableFuture();
+        releaseSlow.countDown();
+
+        assertTrue(running.get(5, TimeUnit.SECONDS).isValid());
+        assertEquals(VerificationResult.Status.RETRYABLE, queued.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(1, bulkhead.getRejectedCount());
+        assertEquals(0, bulkhead.getActiveCount());
+    }
+
+    @Test
+    public void synchronousVerificationRejectedWhenFull() throws Exception {
+        Bulkhead bulkhead = Bulkhead.newBuilder().maxConcurrent(1).maxQueued(0).build();
+        manager.setBulkhead("slow", bulkhead);
+
+        manager.isValidAsync(transaction("slow"));
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+        assertEquals(VerificationResult.Status.RETRYABLE, manager.verify(transaction("slow")).getStatus());
+        assertFalse(manager.isValid(transaction("slow")));
+        assertTrue(manager.verify(transaction("fast")).isValid());
+        assertEquals(2, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void replaceVerifier() {
+        PurchaseVerifier fast = manager.getVerifier("fast");
+        PurchaseVerifier rejecting = new PurchaseVerifier() {
+            @Override
+            public String storeName() {
+                return "fast";
+            }
+
+            @Override
+            public boolean isValid(Transaction transaction) {
+                return false;
+            }
+        };
+
+        assertSame(fast, manager.replaceVerifier(rejecting));
+        assertFalse(manager.isValid(transaction("fast")));
+
+        // a stale verifier neither replaces nor removes the current one
+        assertFalse(manager.replaceVerifier(fast, fast));
+        manager.removeVerifier(fast);
+        assertSame(rejecting, manager.getVerifier("fast"));
+
+        assertTrue(manager.replaceVerifier(rejecting, fast));
+        assertTrue(manager.isValid(transaction("fast")));
+    }
+
+    @Test
+    public void recordsMetricsPerStore() throws Exception {
+        InMemoryVerificationMetrics metrics = new InMemoryVerificationMetrics();
+        manager.setMetrics(metrics);
+        manager.setBulkhead("slow", Bulkhead.newBuilder().maxConcurrent(1).maxQueued(0).build());
+
+        manager.isValidAsync(transaction("slow"));
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        manager.verify(transaction("slow"));
+        manager.verify(transaction("fast"));
+        manager.isValid(transaction("fast"));
+        manager.verify(transaction("unknown"));
+
+        assertEquals(2, metrics.getStore("fast").getValidCount());
+        assertEquals(2, metrics.getStore("fast").getLatency().getCount());
+        assertEquals(1, metrics.getStore("slow").getErrorCount());
+        assertNull(metrics.getStore("unknown"));
+    }
+
+    @Test
+    public void transactionWithoutStoreGetsDefault() throws Exception {
+        PurchaseVerifierManager lenient = new PurchaseVerifierManager(true);
+        lenient.addVerifier(manager.getVerifier("fast"));
+
+        assertTrue(lenient.isValid(new Transaction()));
+        assertTrue(lenient.verify(new Transaction()).isValid());
+        assertTrue(lenient.isValidAsync(new Transaction()).toCompletableFuture().get(5, TimeUnit.SECONDS).isValid());
+        Map<Transaction, VerificationResult> results = lenient.verifyAll(Arrays.asList(new Transaction(), transaction("fast")));
+        assertEquals(2, results.size());
+        for (VerificationResult result : results.values()) {
+            assertTrue(result.isValid());
+        }
+        assertNull(lenient.getVerifier(null));
+        assertNull(lenient.getBulkhead(null));
+
+        assertEquals(VerificationResult.Status.UNSUPPORTED, manager.verify(new Transaction()).getStatus());
+        assertFalse(manager.isValid(new Transaction()));
+    }
+
+    @Test
+    public void verifyAllGroupsByStoreInOrder() {
+        final List<List<Transaction>> batches = Collections.synchronizedList(new ArrayList<List<Transaction>>());
+        manager.addVerifier(new PurchaseVerifier() {
+            @Override
+            public String storeName() {
+                return "batch";
+            }
+
+            @Override
+            public boolean isValid(Transaction transaction) {
+                return "ok".equals(transaction.getOrderId());
+            }
+
+            @Override
+            public List<VerificationResult> verifyBatch(List<Transaction> transactions) {
+                batches.add(new ArrayList<Transaction>(transactions));
+                return PurchaseVerifier.super.verifyBatch(transactions);
+            }
+        });
+        Transaction first = transaction("batch", "ok");
+        Transaction fast = transaction("fast");
+        Transaction unknown = transaction("unknown");
+        Transaction second = transaction("batch", "bogus");
+
+        Map<Transaction, VerificationResult> results = manager.verifyAll(Arrays.asList(first, fast, unknown, second));
+
+        assertEquals(Arrays.asList(first, fast, unknown, second), new ArrayList<Transaction>(results.keySet()));
+        assertTrue(results.get(first).isValid());
+        assertTrue(results.get(fast).isValid());
+        assertEquals(VerificationResult.Status.UNSUPPORTED, results.get(unknown).getStatus());
+        assertEquals(VerificationResult.Status.INVALID, results.get(second).getStatus());
+        assertEquals(Collections.singletonList(Arrays.asList(first, second)), batches);
+    }
+
+    @Test
+    public void verifyAllRejectsGroupOfFullBulkhead() throws Exception {
+        Bulkhead bulkhead = Bulkhead.newBuilder().maxConcurrent(1).maxQueued(0).build();
+        manager.setBulkhead("slow", bulkhead);
+        manager.isValidAsync(transaction("slow"));
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+        Transaction slow = transaction("slow");
+        Transaction fast = transaction("fast");
+        Map<Transaction, VerificationResult> results = manager.verifyAll(Arrays.asList(slow, fast));
+
+        assertEquals(VerificationResult.Status.RETRYABLE, results.get(slow).getStatus());
+        assertTrue(results.get(fast).isValid());
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void verifyAllPropagatesVerifierExceptions() {
+        manager.addVerifier(new PurchaseVerifier() {
+            @Override
+            public String storeName() {
+                return "broken";
+            }
+
+            @Override
+            public boolean isValid(Transaction transaction) {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        try {
+            manager.verifyAll(Arrays.asList(transaction("broken"), transaction("fast")));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void defaultVerifyBatchVerifiesEachTransaction() {
+        List<VerificationResult> results = manager.getVerifier("fast").verifyBatch(
+                Arrays.asList(transaction("fast"), transaction("fast")));
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isValid());
+        assertTrue(results.get(1).isValid());
+    }
+
+    private static Transaction transaction(String storeName, String orderId) {
+        final Transaction transaction = transaction(storeName);
+        transaction.setOrderId(orderId);
+        return transaction;
+    }
+
+    private static Transaction transaction(String storeName) {
+        final Transaction transaction = new Transaction();
+        transaction.setStoreName(storeName);
+        return transaction;
+    }
+}
@@ -0,0 +1,201 @@
+package com.badlogic.gdx.pay.server;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.impl.PurchaseVerifierAndroidGoogle;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResilientPurchaseVerifierTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<String> transitions = new CopyOnWriteArrayList<String>();
+    private volatile int failuresLeft;
+
+    private final PurchaseVerifier flaky = new PurchaseVerifier() {
+        @Override
+        public String storeName() {
+            return "flaky";
+        }
+
+        @Override
+        public boolean isValid(Transaction transaction) {
+            return verify(transaction).isValid();
+        }
+
+        @Override
+        public VerificationResult verify(Transaction transaction) {
+            calls.incrementAndGet();
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                return VerificationResult.retryable("Receipt server unavailable");
+            }
+            return VerificationResult.valid();
+        }
+    };
+
+    @Test
+    public void retriesTransientFailures() {
+        failuresLeft = 2;
+        ResilientPurchaseVerifier verifier = builder().maxAttempts(3).build();
+
+        assertTrue(verifier.verify(new Transaction()).isValid());
+        assertEquals(3, calls.get());
+        assertEquals(2, verifier.getRetryCount());
+        assertEquals(0, verifier.getFallbackCount());
+    }
+
+    @Test
+    public void retriesAsynchronously() throws Exception {
+        failuresLeft = 2;
+        ResilientPurchaseVerifier verifier = builder().maxAttempts(3).build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            VerificationResult result = verifier.isValidAsync(new Transaction(), executor).toCompletableFuture()
+                    .get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.isValid());
+            assertEquals(3, calls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failClosedWhenAttemptsExhausted() {
+        failuresLeft = 5;
+        ResilientPurchaseVerifier verifier = builder().maxAttempts(2).build();
+
+        VerificationResult result = verifier.verify(new Transaction());
+
+        assertEquals(VerificationResult.Status.RETRYABLE, result.getStatus());
+        assertFalse(verifier.isValid(new Transaction()));
+        assertEquals(2, verifier.getFallbackCount());
+    }
+
+    @Test
+    public void circuitBreakerOpensAndFailsOpen() {
+        failuresLeft = 100;
+        ResilientPurchaseVerifier verifier = builder()
+                .maxAttempts(1)
+                .circuitBreaker(2, 1, TimeUnit.HOURS)
+                .failurePolicy(ResilientPurchaseVerifier.FailurePolicy.FAIL_OPEN)
+                .build();
+
+        verifier.verify(new Transaction());
+        verifier.verify(new Transaction());
+        VerificationResult result = verifier.verify(new Transaction());
+
+        assertEquals(CircuitBreaker.State.OPEN, verifier.getCircuitBreaker().getState());
+        assertEquals(2, calls.get());
+        assertTrue(result.isValid());
+        assertTrue(result.getMessage().startsWith("Accepted without verification"));
+        assertTrue(result.isFallback());
+        assertEquals("CLOSED -> OPEN", transitions.get(0));
+    }
+
+    @Test
+    public void malformedTransactionIsRejectedUnderFailOpen() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        PurchaseVerifierAndroidGoogle google = new PurchaseVerifierAndroidGoogle();
+        google.setPublicKey(new String(Base64Util.encode(generator.generateKeyPair().getPublic().getEncoded())));
+        ResilientPurchaseVerifier verifier = ResilientPurchaseVerifier.newBuilder()
+                .verifier(google)
+                .maxAttempts(3)
+                .circuitBreaker(2, 1, TimeUnit.HOURS)
+                .failurePolicy(ResilientPurchaseVerifier.FailurePolicy.FAIL_OPEN)
+                .build();
+        // data without signature: the verifier throws
+        Transaction transaction = new Transaction();
+        transaction.setTransactionData("{\"orderId\":\"GPA.1234\"}");
+
+        for (int i = 0; i < 5; i++) {
+            VerificationResult result = verifier.verify(transaction);
+            assertEquals(VerificationResult.Status.INVALID, result.getStatus());
+            assertFalse(result.isFallback());
+        }
+        VerificationResult async = verifier.isValidAsync(transaction, Runnable::run).toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(VerificationResult.Status.INVALID, async.getStatus());
+        for (VerificationResult result : verifier.verifyBatch(Arrays.asList(transaction, transaction))) {
+            assertEquals(VerificationResult.Status.INVALID, result.getStatus());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, verifier.getCircuitBreaker().getState());
+        assertEquals(0, verifier.getRetryCount());
+        assertEquals(0, verifier.getFallbackCount());
+    }
+
+    @Test
+    public void batchRejectsOnlyTheMalformedTransaction() {
+        PurchaseVerifier strict = new PurchaseVerifier() {
+            @Override
+            public String storeName() {
+                return "strict";
+            }
+
+            @Override
+            public boolean isValid(Transaction transaction) {
+                return verify(transaction).isValid();
+            }
+
+            @Override
+            public VerificationResult verify(Transaction transaction) {
+                calls.incrementAndGet();
+                if (transaction.getTransactionData() == null) {
+                    throw new NullPointerException("transaction data");
+                }
+                return VerificationResult.valid();
+            }
+        };
+        ResilientPurchaseVerifier verifier = builder().verifier(strict).maxAttempts(3).build();
+        Transaction good = new Transaction();
+        good.setTransactionData("{}");
+
+        List<VerificationResult> results = verifier.verifyBatch(Arrays.asList(good, new Transaction(), good));
+
+        assertTrue(results.get(0).isValid());
+        assertEquals(VerificationResult.Status.INVALID, results.get(1).getStatus());
+        assertTrue(results.get(2).isValid());
+        // the failed batch call reached the malformed transaction, then each one was verified on its own
+        assertEquals(5, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, verifier.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void circuitBreakerClosesAfterSuccessfulTrial() throws Exception {
+        failuresLeft = 1;
+        ResilientPurchaseVerifier verifier = builder()
+                .maxAttempts(1)
+                .circuitBreaker(1, 20, TimeUnit.MILLISECONDS)
+                .build();
+
+        assertFalse(verifier.verify(new Transaction()).isValid());
+        assertFalse(verifier.verify(new Transaction()).isValid());
+        assertEquals(1, calls.get());
+
+        Thread.sleep(50);
+        assertTrue(verifier.verify(new Transaction()).isValid());
+        assertEquals(CircuitBreaker.State.CLOSED, verifier.getCircuitBreaker().getState());
+        assertEquals(3, transitions.size());
+        assertEquals("HALF_OPEN -> CLOSED", transitions.get(2));
+    }
+
+    private ResilientPurchaseVerifier.Builder builder() {
+        return ResilientPurchaseVerifier.newBuilder()
+                .verifier(flaky)
+                .backoff(1, 5, TimeUnit.MILLISECONDS)
+                .listener((breaker, from, to) -> transitions.add(from + " -> " + to));
+    }
+}
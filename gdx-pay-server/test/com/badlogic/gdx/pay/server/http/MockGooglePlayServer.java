@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.http;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.pay.server.http.MockHttpServer.MockResponse;
+import com.badlogic.gdx.pay.server.http.MockHttpServer.RecordedRequest;
+import com.badlogic.gdx.pay.server.http.MockHttpServer.Responder;
+
+/** A local stand-in for the Google Play Developer API and Google's OAuth token endpoint, so
+ * {@link com.badlogic.gdx.pay.server.impl.PurchaseVerifierAndroidGoogleApi} can be exercised without network access or a
+ * service account with Play Console access.
+ *
+ * <pre>
+ * MockGooglePlayServer google = MockGooglePlayServer.start();
+ * google.addProduct("com.example.game", "coins_100", "token", MockGooglePlayServer.PURCHASED, "GPA.1234");
+ * GoogleServiceAccountCredentials credentials = new GoogleServiceAccountCredentials("test@example.com", privateKey,
+ * 	google.getTokenUrl(), transport);
+ * PurchaseVerifierAndroidGoogleApi verifier = new PurchaseVerifierAndroidGoogleApi("com.example.game", credentials, transport);
+ * verifier.setApiUrl(google.getApiUrl());
+ * ...
+ * google.stop();
+ * </pre>
+ *
+ * The token endpoint accepts any well-formed JWT bearer grant without checking its signature and hands out access tokens
+ * that are valid until {@link #revokeAccessTokens() revoked}. Purchases are only returned to requests carrying such a
+ * token; unknown purchase tokens are answered with 404. */
+public class MockGooglePlayServer {
+
+	/** purchaseState of a purchased one-time product. */
+	public static final int PURCHASED = 0;
+	/** purchaseState of a canceled one-time product. */
+	public static final int CANCELED = 1;
+	/** purchaseState of a one-time product whose payment is pending. */
+	public static final int PENDING = 2;
+
+	private static final String TOKEN_PATH = "/token";
+	private static final String API_PATH = "/androidpublisher/v3/applications/";
+
+	private final MockHttpServer server;
+	private final Set<String> accessTokens = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicInteger tokenRequests = new AtomicInteger();
+	private final AtomicInteger apiRequests = new AtomicInteger();
+	private volatile long accessTokenLifetimeSeconds = 3600;
+
+	private MockGooglePlayServer (MockHttpServer server) {
+		this.server = server;
+		server.respond(TOKEN_PATH, new Responder() {
+			@Override
+			public MockResponse respond (RecordedRequest request) {
+				return issueToken(request);
+			}
+		});
+	}
+
+	/** Starts a server on a free port of the loopback interface. */
+	public static MockGooglePlayServer start () throws IOException {
+		return new MockGooglePlayServer(MockHttpServer.start());
+	}
+
+	/** Stops the server. */
+	public void stop () {
+		server.stop();
+	}
+
+	/** Returns the underlying server, e.g. to inspect requests or to answer a path with an error. */
+	public MockHttpServer getServer () {
+		return server;
+	}
+
+	/** Returns the base URL to pass to {@link com.badlogic.gdx.pay.server.impl.PurchaseVerifierAndroidGoogleApi#setApiUrl(String)}. */
+	public String getApiUrl () {
+		return server.url("");
+	}
+
+	/** Returns the URL of the token endpoint, to pass to the credentials. */
+	public String getTokenUrl () {
+		return server.url(TOKEN_PATH);
+	}
+
+	/** Sets the expires_in of access tokens issued from now on. One hour by default, like Google's tokens. */
+	public void setAccessTokenLifetime (long seconds) {
+		this.accessTokenLifetimeSeconds = seconds;
+	}
+
+	/** Rejects all access tokens issued so far with 401, e.g. to simulate a revoked or expired token. */
+	public void revokeAccessTokens () {
+		accessTokens.clear();
+	}
+
+	/** Returns how many access tokens were requested. */
+	public int getTokenRequestCount () {
+		return tokenRequests.get();
+	}
+
+	/** Returns how many purchases were requested, including rejected requests. */
+	public int getApiRequestCount () {
+		return apiRequests.get();
+	}
+
+	/** Adds a one-time product purchase, answered by purchases.products.get.
+	 * @param purchaseState {@link #PURCHASED}, {@link #CANCELED} or {@link #PENDING}.
+	 * @param orderId The order id or null. */
+	public void addProduct (String packageName, String productId, String purchaseToken, int purchaseState, String orderId) {
+		String json = "{\"kind\":\"androidpublisher#productPurchase\",\"purchaseTimeMillis\":\"" + System.currentTimeMillis()
+			+ "\",\"purchaseState\":" + purchaseState + ",\"consumptionState\":0,\"acknowledgementState\":1"
+			+ (orderId != null ? ",\"orderId\":\"" + orderId + "\"" : "") + "}";
+		respond(API_PATH + packageName + "/purchases/products/" + productId + "/tokens/" + purchaseToken, json);
+	}
+
+	/** Adds a subscription purchase, answered by purchases.subscriptions.get.
+	 * @param expiryTimeMillis When the subscription expires.
+	 * @param paymentState 0 (pending), 1 (received), 2 (free trial) or 3 (deferred).
+	 * @param orderId The order id or null. */
+	public void addSubscription (String packageName, String subscriptionId, String purchaseToken, long expiryTimeMillis,
+		int paymentState, String orderId) {
+		String json = "{\"kind\":\"androidpublisher#subscriptionPurchase\",\"startTimeMillis\":\"" + System.currentTimeMillis()
+			+ "\",\"expiryTimeMillis\":\"" + expiryTimeMillis + "\",\"autoRenewing\":true,\"paymentState\":" + paymentState
+			+ (orderId != null ? ",\"orderId\":\"" + orderId + "\"" : "") + "}";
+		respond(API_PATH + packageName + "/purchases/subscriptions/" + subscriptionId + "/tokens/" + purchaseToken, json);
+	}
+
+	private void respond (String path, final String json) {
+		server.respond(path, new Responder() {
+			@Override
+			public MockResponse respond (RecordedRequest request) {
+				apiRequests.incrementAndGet();
+				if (!"GET".equals(request.getMethod())) {
+					return new MockResponse(405, error(405, "Method not allowed"));
+				}
+				String authorization = request.getHeader("Authorization");
+				if (authorization == null || !authorization.startsWith("Bearer ")
+					|| !accessTokens.contains(authorization.substring("Bearer ".length()))) {
+					return new MockResponse(401, error(401, "Request had invalid authentication credentials."));
+				}
+				return new MockResponse(200, json);
+			}
+		});
+	}
+
+	private MockResponse issueToken (RecordedRequest request) {
+		int count = tokenRequests.incrementAndGet();
+		String body = request.getBodyAsString();
+		String assertion = formValue(body, "assertion");
+		if (!"POST".equals(request.getMethod())
+			|| !"urn%3Aietf%3Aparams%3Aoauth%3Agrant-type%3Ajwt-bearer".equals(formValue(body, "grant_type"))
+			|| assertion == null || assertion.split("\\.", -1).length != 3) {
+			return new MockResponse(400, "{\"error\":\"invalid_grant\",\"error_description\":\"Invalid JWT bearer grant.\"}");
+		}
+		String accessToken = "mock-access-token-" + count;
+		accessTokens.add(accessToken);
+		return new MockResponse(200, "{\"access_token\":\"" + accessToken + "\",\"expires_in\":" + accessTokenLifetimeSeconds
+			+ ",\"token_type\":\"Bearer\"}");
+	}
+
+	/** Returns the raw (still encoded) value of a form parameter or null. */
+	private static String formValue (String form, String name) {
+		for (String pair : form.split("&")) {
+			if (pair.startsWith(name + "=")) {
+				return pair.substring(name.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	private static String error (int code, String message) {
+		return "{\"error\":{\"code\":" + code + ",\"message\":\"" + message + "\"}}";
+	}
+}
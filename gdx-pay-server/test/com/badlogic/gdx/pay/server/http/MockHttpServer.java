@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay.server.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/** A local HTTP endpoint standing in for a store in tests, so verifiers can be exercised without network access.
+ *
+ * <pre>
+ * MockHttpServer server = MockHttpServer.start();
+ * server.respond("/verifyReceipt", 200, "{\"status\":0}");
+ * PurchaseVerifieriOSApple verifier = new PurchaseVerifieriOSApple(false);
+ * verifier.setEndpoints(server.url("/verifyReceipt"), server.url("/verifyReceipt"));
+ * ...
+ * server.stop();
+ * </pre>
+ *
+ * Only binds to the loopback interface. */
+public class MockHttpServer {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Answers a request to a path. */
+	public interface Responder {
+		/** @param request The received request.
+		 * @return The response to send. */
+		MockResponse respond(RecordedRequest request) throws IOException;
+	}
+
+	/** A canned response. */
+	public static final class MockResponse {
+		final int statusCode;
+		final byte[] body;
+		final long delayMillis;
+
+		public MockResponse (int statusCode, String body) {
+			this(statusCode, body, 0);
+		}
+
+		/** @param delayMillis How long to wait before answering, e.g. to simulate a slow store. */
+		public MockResponse (int statusCode, String body, long delayMillis) {
+			this.statusCode = statusCode;
+			this.body = body.getBytes(UTF_8);
+			this.delayMillis = delayMillis;
+		}
+	}
+
+	/** A request as received by the server. */
+	public static final class RecordedRequest {
+		private final String method;
+		private final String path;
+		private final String query;
+		private final Map<String, List<String>> headers;
+		private final byte[] body;
+
+		RecordedRequest (String method, String path, String query, Map<String, List<String>> headers, byte[] body) {
+			this.method = method;
+			this.path = path;
+			this.query = query;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		public String getMethod () {
+			return method;
+		}
+
+		public String getPath () {
+			return path;
+		}
+
+		/** Returns the raw query string or null. */
+		public String getQuery () {
+			return query;
+		}
+
+		/** Returns the first value of a header or null. */
+		public String getHeader (String name) {
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				if (header.getKey() != null && header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+					return header.getValue().get(0);
+				}
+			}
+			return null;
+		}
+
+		public String getBodyAsString () {
+			return new String(body, UTF_8);
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Responder> responders = new ConcurrentHashMap<String, Responder>();
+	private final List<RecordedRequest> requests = Collections.synchronizedList(new ArrayList<RecordedRequest>());
+
+	private MockHttpServer (HttpServer server, ExecutorService executor) {
+		this.server = server;
+		this.executor = executor;
+	}
+
+	/** Starts a server on a free port of the loopback interface. */
+	public static MockHttpServer start () throws IOException {
+		HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		final MockHttpServer mock = new MockHttpServer(httpServer, executor);
+		httpServer.createContext("/", new HttpHandler() {
+			@Override
+			public void handle (HttpExchange exchange) throws IOException {
+				mock.handle(exchange);
+			}
+		});
+		httpServer.setExecutor(executor);
+		httpServer.start();
+		return mock;
+	}
+
+	/** Stops the server and its request threads. */
+	public void stop () {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/** Returns the URL for a path on this server, e.g. "http://127.0.0.1:49152/verifyReceipt". */
+	public String url (String path) {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + path;
+	}
+
+	/** Answers all requests to the path with a fixed response. */
+	public void respond (String path, int statusCode, String body) {
+		final MockResponse response = new MockResponse(statusCode, body);
+		respond(path, new Responder() {
+			@Override
+			public MockResponse respond (RecordedRequest request) {
+				return response;
+			}
+		});
+	}
+
+	/** Answers requests to the path with the given responder. Paths without responder are answered with 404. */
+	public void respond (String path, Responder responder) {
+		responders.put(path, responder);
+	}
+
+	/** Returns all requests received so far. */
+	public List<RecordedRequest> getRequests () {
+		synchronized (requests) {
+			return new ArrayList<RecordedRequest>(requests);
+		}
+	}
+
+	/** Returns the number of requests received so far. */
+	public int getRequestCount () {
+		return requests.size();
+	}
+
+	private void handle (HttpExchange exchange) throws IOException {
+		try {
+			RecordedRequest request = new RecordedRequest(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+				exchange.getRequestURI().getRawQuery(), exchange.getRequestHeaders(), readFully(exchange.getRequestBody()));
+			requests.add(request);
+
+			Responder responder = responders.get(request.getPath());
+			MockResponse response = responder != null ? responder.respond(request) : new MockResponse(404, "");
+			if (response.delayMillis > 0) {
+				try {
+					Thread.sleep(response.delayMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(response.statusCode, response.body.length == 0 ? -1 : response.body.length);
+			if (response.body.length > 0) {
+				OutputStream out = exchange.getResponseBody();
+				out.write(response.body);
+				out.close();
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static byte[] readFully (InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+}
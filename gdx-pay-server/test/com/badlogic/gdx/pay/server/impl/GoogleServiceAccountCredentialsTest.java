@@ -0,0 +1,97 @@
+package com.badlogic.gdx.pay.server.impl;
+
+import com.badlogic.gdx.pay.server.http.HttpResponse;
+import com.badlogic.gdx.pay.server.http.HttpTransport;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GoogleServiceAccountCredentialsTest {
+
+    private static PrivateKey privateKey;
+
+    /** The responses of the token endpoint, taken one per request. */
+    private final BlockingQueue<HttpResponse> responses = new LinkedBlockingQueue<HttpResponse>();
+    private final CountDownLatch requested = new CountDownLatch(2);
+
+    private final HttpTransport transport = request -> {
+        requested.countDown();
+        try {
+            HttpResponse response = responses.poll(5, TimeUnit.SECONDS);
+            if (response == null) {
+                throw new IOException("No response");
+            }
+            return response;
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    };
+
+    private final GoogleServiceAccountCredentials credentials = new GoogleServiceAccountCredentials(
+            "verifier@example.iam.gserviceaccount.com", privateKey, "http://localhost/token", transport);
+
+    @BeforeClass
+    public static void generateKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        privateKey = generator.generateKeyPair().getPrivate();
+    }
+
+    @Test
+    public void tokenAboutToExpireIsUsedWhileAnotherThreadRefreshes() throws Exception {
+        // expires within the refresh margin: the next call refreshes
+        responses.add(token("first", 30));
+        assertEquals("first", credentials.getAccessToken());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> refreshing = executor.submit(credentials::getAccessToken);
+            assertTrue(requested.await(5, TimeUnit.SECONDS));
+
+            assertEquals("first", credentials.getAccessToken());
+            assertFalse(refreshing.isDone());
+
+            responses.add(token("second", 3600));
+            assertEquals("second", refreshing.get(5, TimeUnit.SECONDS));
+            assertEquals("second", credentials.getAccessToken());
+            assertEquals(2, credentials.getRefreshCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedRefreshKeepsTokenThatHasNotExpired() throws Exception {
+        responses.add(token("first", 30));
+        assertEquals("first", credentials.getAccessToken());
+
+        responses.add(new HttpResponse(500, new ByteArrayInputStream(new byte[0]), null));
+        assertEquals("first", credentials.getAccessToken());
+        assertEquals(1, credentials.getRefreshCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void failedRequestWithoutTokenThrows() throws Exception {
+        responses.add(new HttpResponse(500, new ByteArrayInputStream(new byte[0]), null));
+        credentials.getAccessToken();
+    }
+
+    private static HttpResponse token(String value, int expiresIn) {
+        String json = "{\"access_token\":\"" + value + "\",\"expires_in\":" + expiresIn + ",\"token_type\":\"Bearer\"}";
+        return new HttpResponse(200, new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))), null);
+    }
+}
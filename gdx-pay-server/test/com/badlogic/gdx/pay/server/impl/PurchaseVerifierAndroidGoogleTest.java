@@ -0,0 +1,77 @@
+package com.badlogic.gdx.pay.server.impl;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+
+import static org.junit.Assert.*;
+
+public class PurchaseVerifierAndroidGoogleTest {
+
+    private static KeyPair oldKey;
+    private static KeyPair newKey;
+
+    @BeforeClass
+    public static void generateKeys() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        oldKey = generator.generateKeyPair();
+        newKey = generator.generateKeyPair();
+    }
+
+    @Test
+    public void acceptsSignaturesOfAllKeys() throws Exception {
+        PurchaseVerifierAndroidGoogle verifier = new PurchaseVerifierAndroidGoogle();
+        verifier.setPublicKeys(publicKey(oldKey), publicKey(newKey));
+
+        VerificationResult result = verifier.verify(transaction(newKey));
+
+        assertTrue(result.isValid());
+        assertEquals(1, result.getClaims().get(PurchaseVerifierAndroidGoogle.CLAIM_KEY_INDEX));
+        assertEquals(0, verifier.verify(transaction(oldKey)).getClaims().get(PurchaseVerifierAndroidGoogle.CLAIM_KEY_INDEX));
+    }
+
+    @Test
+    public void rotatesKeys() throws Exception {
+        PurchaseVerifierAndroidGoogle verifier = new PurchaseVerifierAndroidGoogle();
+        verifier.setPublicKey(publicKey(oldKey));
+        assertFalse(verifier.verify(transaction(newKey)).isValid());
+
+        verifier.addPublicKey(publicKey(newKey));
+        assertTrue(verifier.verify(transaction(newKey)).isValid());
+
+        verifier.removePublicKey(publicKey(oldKey));
+        assertEquals(1, verifier.getPublicKeyCount());
+        assertFalse(verifier.verify(transaction(oldKey)).isValid());
+        assertTrue(verifier.verify(transaction(newKey)).isValid());
+    }
+
+    @Test
+    public void unsupportedWithoutKeys() {
+        assertEquals(VerificationResult.Status.UNSUPPORTED,
+                new PurchaseVerifierAndroidGoogle().verify(new Transaction()).getStatus());
+    }
+
+    private static String publicKey(KeyPair keyPair) {
+        return new String(Base64Util.encode(keyPair.getPublic().getEncoded()));
+    }
+
+    private static Transaction transaction(KeyPair keyPair) throws GeneralSecurityException {
+        String data = "{\"orderId\":\"GPA.1234\"}";
+        Signature signature = Signature.getInstance("SHA1withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(data.getBytes());
+
+        Transaction transaction = new Transaction();
+        transaction.setTransactionData(data);
+        transaction.setTransactionDataSignature(new String(Base64Util.encode(signature.sign())));
+        return transaction;
+    }
+}
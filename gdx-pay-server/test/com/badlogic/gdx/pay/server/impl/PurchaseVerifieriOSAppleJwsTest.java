@@ -0,0 +1,166 @@
+package com.badlogic.gdx.pay.server.impl;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import com.badlogic.gdx.pay.server.util.Base64Util;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PurchaseVerifieriOSAppleJwsTest {
+
+    // a test chain made with openssl: EC P-256 root, intermediate and leaf, the latter two with Apple's marker extensions
+    private static final String ROOT = "MIIBbzCCARSgAwIBAgIUEBFlpp4eJztPu4PhWy2vJST4XmYwCgYIKoZIzj0EAwIwFDESMBAGA1UEAwwJVGVzdCBSb290MCAXDTI2MTAxODE4MDk1NFoYDzIxMjYwOTI0MTgwOTU0WjAUMRIwEAYDVQQDDAlUZXN0IFJvb3QwWTATBgcqhkjOPQIBBggqhkjOPQMBBwNCAARuGG21XKQFRNhQwpCumLY1NrZrvkEjYM0wjaClpyf04qdAZoTK4aiw7i2jCU9rZMiZM0AuUpfqG0TZ4uKN36X3o0IwQDAPBgNVHRMBAf8EBTADAQH/MA4GA1UdDwEB/wQEAwIBBjAdBgNVHQ4EFgQUpg7bVPRdBToxsDSWbrsp224Kqh0wCgYIKoZIzj0EAwIDSQAwRgIhALEnc2mbnE92MWsaF/I3lSnlFgVGPHPAHvhgCe+yRjp9AiEA0d8QURH1dflTAfkhas4a1Q3sAqyt5z7i3wNZDZfscdI=";
+    private static final String INTERMEDIATE = "MIIBqzCCAVKgAwIBAgIUXoUFTABtd7NuID2+aoLNlyVbKRAwCgYIKoZIzj0EAwIwFDESMBAGA1UEAwwJVGVzdCBSb290MCAXDTI2MTAxODE4MDk1NFoYDzIxMjYwOTI0MTgwOTU0WjAcMRowGAYDVQQDDBFUZXN0IEludGVybWVkaWF0ZTBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABF6MzJfb05xmAzU85yIN42icoecJKKpzLBlaDZH1RZDIwZFPM0Wl0uP7qarFx29DSc08dtPrlHO8T39tzmJsdgyjeDB2MBIGA1UdEwEB/wQIMAYBAf8CAQAwDgYDVR0PAQH/BAQDAgEGMBAGCiqGSIb3Y2QGAgEEAgUAMB0GA1UdDgQWBBQ0Do2VlqzjYpki+FX5mEEeQyy5ZzAfBgNVHSMEGDAWgBSmDttU9F0FOjGwNJZuuynbbgqqHTAKBggqhkjOPQQDAgNHADBEAiBWWwvjr4I5VsjSIenJy0S4lrbjxdz+9F0GQ9sd3hLajgIgWkZwZnUPpdRP4+tn8zq3MvJPpzvh108OTNbOq63FLCg=";
+    private static final String LEAF = "MIIBpjCCAUygAwIBAgIUKwkAPlM9E0R/AeY5KA5u4E29hXcwCgYIKoZIzj0EAwIwHDEaMBgGA1UEAwwRVGVzdCBJbnRlcm1lZGlhdGUwIBcNMjYxMDE4MTgwOTU0WhgPMjEyNjA5MjQxODA5NTRaMBQxEjAQBgNVBAMMCVRlc3QgTGVhZjBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABPIqS1cVbMs9rV0gmj3j5H09Ejeb2Tee1iiy7IhHWj/Y8a+6pBUN+G8yvLkHrt8FgU9GGnGisSUzT7PFnVWDy8OjcjBwMAwGA1UdEwEB/wQCMAAwDgYDVR0PAQH/BAQDAgeAMBAGCiqGSIb3Y2QGCwEEAgUAMB0GA1UdDgQWBBSrHSe7+9UKSdAMyLvF+vVji9sR2zAfBgNVHSMEGDAWgBQ0Do2VlqzjYpki+FX5mEEeQyy5ZzAKBggqhkjOPQQDAgNIADBFAiACNAWU7eZ4UaYL09NX6uZp8iTWaQ3achWrZQ9RV2yIMAIhAPW6SIYExJo2tRZtfAbTVSDkFovfDK2pKxw8MngzQkLi";
+    private static final String LEAF_KEY = "MIGHAgEAMBMGByqGSM49AgEGCCqGSM49AwEHBG0wawIBAQQgvjjYYz98AUozH+PKFNgnhxzfmK+BNxEGn8ap1Iu1dIqhRANCAATyKktXFWzLPa1dIJo94+R9PRI3m9k3ntYosuyIR1o/2PGvuqQVDfhvMry5B67fBYFPRhpxorElM0+zxZ1Vg8vD";
+    private static final String OTHER_ROOT = "MIIBcDCCARagAwIBAgIUSnkA2nXDvwY2VWC/kL1TsOLzjn0wCgYIKoZIzj0EAwIwFTETMBEGA1UEAwwKT3RoZXIgUm9vdDAgFw0yNjEwMTgxODA5NTRaGA8yMTI2MDkyNDE4MDk1NFowFTETMBEGA1UEAwwKT3RoZXIgUm9vdDBZMBMGByqGSM49AgEGCCqGSM49AwEHA0IABGUx6snFulDUOVx2mIWB1CJKGQquX4wc02aoHWe36saOQNs4oQo1alYHKmqw1vAL6vH85F6hsu05fwRwSHEnb26jQjBAMA8GA1UdEwEB/wQFMAMBAf8wDgYDVR0PAQH/BAQDAgEGMB0GA1UdDgQWBBSBsV4WToHI9owSZUIhz8ZI1uS9xTAKBggqhkjOPQQDAgNIADBFAiEAjmGh6KnmTikXe8DsMZWJVu6VSEgck5WH8oTTUtVNKRICIEm7ZYnIMT6QCK8IJlEmzWQ5qhBEb64JkdKVd7XdXXtv";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String HEADER = "{\"alg\":\"ES256\",\"x5c\":[\"" + LEAF + "\",\"" + INTERMEDIATE + "\"]}";
+
+    private PurchaseVerifieriOSAppleJws verifier;
+
+    @Before
+    public void setUp() {
+        verifier = new PurchaseVerifieriOSAppleJws(certificate(ROOT), "com.example.game");
+    }
+
+    @Test
+    public void validJws() throws Exception {
+        String jws = sign(HEADER, "{\"bundleId\":\"com.example.game\",\"transactionId\":\"2000\",\"signedDate\":"
+                + System.currentTimeMillis() + "}");
+
+        Map<String, Object> claims = verifier.verifyAndDecode(jws);
+
+        assertNotNull(claims);
+        assertEquals("2000", claims.get("transactionId"));
+        assertTrue(verifier.verify(transaction(jws, "2000")).isValid());
+        assertFalse(verifier.verify(transaction(jws, "3000")).isValid());
+    }
+
+    @Test
+    public void tamperedPayloadIsRejected() throws Exception {
+        String jws = sign(HEADER, "{\"bundleId\":\"com.example.game\",\"transactionId\":\"2000\"}");
+        String[] parts = jws.split("\\.");
+        String tampered = parts[0] + "." + encode("{\"bundleId\":\"com.example.game\",\"transactionId\":\"2001\"}") + "."
+                + parts[2];
+
+        assertNull(verifier.verifyAndDecode(tampered));
+        assertEquals(VerificationResult.Status.INVALID, verifier.verify(transaction(tampered, null)).getStatus());
+    }
+
+    @Test
+    public void untrustedChainIsRejected() throws Exception {
+        String jws = sign(HEADER, "{\"bundleId\":\"com.example.game\",\"signedDate\":"
+                + System.currentTimeMillis() + "}");
+        PurchaseVerifieriOSAppleJws other = new PurchaseVerifieriOSAppleJws(certificate(OTHER_ROOT), null);
+
+        assertNull(other.verifyAndDecode(jws));
+        assertNotNull(verifier.verifyAndDecode(jws));
+    }
+
+    @Test
+    public void signedOutsideCertificateValidityIsRejected() throws Exception {
+        assertNull(verifier.verifyAndDecode(sign(HEADER, "{\"bundleId\":\"com.example.game\",\"signedDate\":1000}")));
+    }
+
+    @Test
+    public void missingSigningDateIsRejected() throws Exception {
+        assertNull(verifier.verifyAndDecode(sign(HEADER, "{\"bundleId\":\"com.example.game\"}")));
+        assertNull(verifier.verifyAndDecode(sign(HEADER, "{\"bundleId\":\"com.example.game\",\"signedDate\":\""
+                + System.currentTimeMillis() + "\"}")));
+    }
+
+    @Test
+    public void malformedInputIsRejected() throws Exception {
+        char[] nested = new char[200000];
+        Arrays.fill(nested, '[');
+        String deep = new String(nested);
+
+        assertNull(verifier.verifyAndDecode(null));
+        assertNull(verifier.verifyAndDecode("not a jws"));
+        assertNull(verifier.verifyAndDecode("a.b.c.d"));
+        assertNull(verifier.verifyAndDecode("!!!.???.***"));
+        assertNull(verifier.verifyAndDecode(encode(deep) + "." + encode("{}") + ".AAAA"));
+        assertNull(verifier.verifyAndDecode(encode("{\"alg\":\"none\"}") + "." + encode("{}") + "."));
+        // the payload is not parsed before the signature is verified
+        String jws = sign(HEADER, "{}");
+        String[] parts = jws.split("\\.");
+        assertNull(verifier.verifyAndDecode(parts[0] + "." + encode(deep) + "." + parts[2]));
+    }
+
+    @Test
+    public void toDerSignatureMatchesJdkEncoding() throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        for (int i = 0; i < 20; i++) {
+            signature.initSign(leafKey());
+            signature.update(("data" + i).getBytes(UTF_8));
+            byte[] der = signature.sign();
+            assertArrayEquals(der, PurchaseVerifieriOSAppleJws.toDerSignature(toRaw(der)));
+        }
+        for (int length : new int[] {0, 2, 62, 63, 66, 128}) {
+            try {
+                PurchaseVerifieriOSAppleJws.toDerSignature(new byte[length]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static Transaction transaction(String jws, String orderId) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionDataSignature(jws);
+        transaction.setOrderId(orderId);
+        return transaction;
+    }
+
+    private static X509Certificate certificate(String base64) {
+        return PurchaseVerifieriOSAppleJws.loadCertificate(new ByteArrayInputStream(Base64Util.decode(base64)));
+    }
+
+    private static PrivateKey leafKey() throws Exception {
+        return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(Base64Util.decode(LEAF_KEY)));
+    }
+
+    private static String sign(String header, String payload) throws Exception {
+        String signingInput = encode(header) + "." + encode(payload);
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(leafKey());
+        signature.update(signingInput.getBytes(UTF_8));
+        return signingInput + "." + encode(toRaw(signature.sign()));
+    }
+
+    private static String encode(String json) {
+        return encode(json.getBytes(UTF_8));
+    }
+
+    private static String encode(byte[] data) {
+        return new String(Base64Util.encode(data, Base64Util.urlsafeMap)).replace("=", "");
+    }
+
+    /** Converts a DER ECDSA signature into R and S concatenated, 32 bytes each. */
+    private static byte[] toRaw(byte[] der) {
+        byte[] raw = new byte[64];
+        int offset = (der[1] & 0x80) != 0 ? 3 : 2;
+        for (int i = 0; i < 2; i++) {
+            int length = der[offset + 1];
+            int start = offset + 2;
+            int skip = Math.max(0, length - 32);
+            System.arraycopy(der, start + skip, raw, i * 32 + 32 - (length - skip), length - skip);
+            offset = start + length;
+        }
+        return raw;
+    }
+}
@@ -0,0 +1,135 @@
+package com.badlogic.gdx.pay.server.impl;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import com.badlogic.gdx.pay.server.http.MockHttpServer;
+import com.badlogic.gdx.pay.server.http.UrlConnectionTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class PurchaseVerifieriOSAppleTest {
+
+    private MockHttpServer server;
+    private PurchaseVerifieriOSApple verifier;
+
+    @Before
+    public void setUp() throws Exception {
+        server = MockHttpServer.start();
+        verifier = new PurchaseVerifieriOSApple(false);
+        verifier.setEndpoints(server.url("/production"), server.url("/sandbox"));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void validReceipt() {
+        server.respond("/production", 200, "{\"status\":0,\"environment\":\"Production\"}");
+
+        final VerificationResult result = verifier.verify(transaction("receipt"));
+
+        assertTrue(result.isValid());
+        assertEquals("Production", result.getClaims().get("environment"));
+        assertEquals(1, server.getRequestCount());
+        assertEquals("POST", server.getRequests().get(0).getMethod());
+        assertEquals("{\"receipt-data\" : \"receipt\"}", server.getRequests().get(0).getBodyAsString());
+    }
+
+    @Test
+    public void invalidReceipt() {
+        server.respond("/production", 200, "{\"status\":21003}");
+
+        final VerificationResult result = verifier.verify(transaction("receipt"));
+
+        assertEquals(VerificationResult.Status.INVALID, result.getStatus());
+        assertEquals(Integer.valueOf(21003), result.getErrorCode());
+    }
+
+    @Test
+    public void overriddenStatusExtractionIsUsed() {
+        server.respond("/production", 200, "{\"status\":0}");
+        verifier = new PurchaseVerifieriOSApple(false) {
+            @Override
+            protected int extractStatus(InputStream inputStream) {
+                return 21003;
+            }
+        };
+        verifier.setEndpoints(server.url("/production"), server.url("/sandbox"));
+
+        final VerificationResult result = verifier.verify(transaction("receipt"));
+
+        assertEquals(VerificationResult.Status.INVALID, result.getStatus());
+        assertEquals(Integer.valueOf(21003), result.getErrorCode());
+    }
+
+    @Test
+    public void httpErrorIsRetryable() {
+        server.respond("/production", 503, "");
+
+        final VerificationResult result = verifier.verify(transaction("receipt"));
+
+        assertTrue(result.isRetryable());
+        assertEquals(Integer.valueOf(503), result.getErrorCode());
+    }
+
+    @Test
+    public void releasesConnectionAfterEachRequest() {
+        server.respond("/production", 200, "{\"status\":0}");
+        verifier = new PurchaseVerifieriOSApple(false, new UrlConnectionTransport(1000, 1000, 1));
+        verifier.setEndpoints(server.url("/production"), server.url("/sandbox"));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(verifier.verify(transaction("receipt" + i)).isValid());
+        }
+
+        assertEquals(20, server.getRequestCount());
+    }
+
+    @Test
+    public void sandboxReceiptIsRejectedWithoutEnvironmentRouting() {
+        server.respond("/production", 200, "{\"status\":21007}");
+        server.respond("/sandbox", 200, "{\"status\":0}");
+
+        assertFalse(verifier.verify(transaction("receipt")).isValid());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void environmentRoutingFallsBackToSandboxAndRemembersReceipt() {
+        server.respond("/production", 200, "{\"status\":21007}");
+        server.respond("/sandbox", 200, "{\"status\":0,\"environment\":\"Sandbox\"}");
+        verifier.setEnvironmentRouting(true);
+
+        final VerificationResult first = verifier.verify(transaction("testflight"));
+        assertTrue(first.isValid());
+        assertEquals("Sandbox", first.getClaims().get("environment"));
+        assertEquals(2, server.getRequestCount());
+
+        assertTrue(verifier.verify(transaction("testflight")).isValid());
+        assertEquals(3, server.getRequestCount());
+        assertEquals("/sandbox", server.getRequests().get(2).getPath());
+    }
+
+    @Test
+    public void environmentRoutingSendsProductionReceiptsOnce() {
+        server.respond("/production", 200, "{\"status\":0}");
+        verifier.setEnvironmentRouting(true);
+
+        assertTrue(verifier.verify(transaction("receipt")).isValid());
+        assertEquals(1, server.getRequestCount());
+        assertEquals("/production", server.getRequests().get(0).getPath());
+    }
+
+    private static Transaction transaction(String receipt) {
+        final Transaction transaction = new Transaction();
+        transaction.setTransactionDataSignature(receipt);
+        return transaction;
+    }
+}
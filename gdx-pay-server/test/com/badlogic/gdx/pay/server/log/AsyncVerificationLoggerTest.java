@@ -0,0 +1,70 @@
+package com.badlogic.gdx.pay.server.log;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncVerificationLoggerTest {
+
+    private final List<String> written = new CopyOnWriteArrayList<String>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final VerificationLogger blocking = new VerificationLogger() {
+        @Override
+        public void log(String message) {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(message);
+        }
+
+        @Override
+        public void error(String message, Throwable error) {
+            written.add(message + ": " + error.getMessage());
+        }
+    };
+
+    @Test
+    public void dropsAndCountsWhenFull() throws Exception {
+        AsyncVerificationLogger logger = new AsyncVerificationLogger(blocking, 1);
+
+        logger.log("first");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        logger.log("second");
+        logger.log("dropped");
+
+        assertEquals(1, logger.getQueuedCount());
+        assertEquals(1, logger.getDroppedCount());
+
+        release.countDown();
+        logger.close();
+
+        assertEquals("first", written.get(0));
+        assertEquals("Log queue full, dropped 1 messages", written.get(1));
+        assertEquals("second", written.get(2));
+    }
+
+    @Test
+    public void writesQueuedMessagesOnClose() {
+        release.countDown();
+        AsyncVerificationLogger logger = new AsyncVerificationLogger(blocking, 16);
+
+        logger.log("message");
+        logger.error("failed", new IllegalStateException("cause"));
+        logger.close();
+        logger.log("after close");
+
+        assertEquals(2, written.size());
+        assertEquals("failed: cause", written.get(1));
+        assertEquals(1, logger.getDroppedCount());
+    }
+}
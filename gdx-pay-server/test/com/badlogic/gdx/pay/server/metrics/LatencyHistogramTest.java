@@ -0,0 +1,41 @@
+package com.badlogic.gdx.pay.server.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverAllValues() {
+        long previous = -1;
+        for (int bucket = 0; bucket < 1888; bucket++) {
+            long highest = LatencyHistogram.highestValue(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(previous + 1));
+            assertEquals(bucket, LatencyHistogram.bucket(highest));
+            assertTrue(highest > previous);
+            previous = highest;
+        }
+        assertEquals(Long.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void percentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500, histogram.getMean(), 0.001);
+        assertEquals(500000, histogram.getValueAtPercentile(50), 500000 / 32);
+        assertEquals(990000, histogram.getValueAtPercentile(99), 990000 / 32);
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertTrue(histogram.getValueAtPercentile(0) <= 1000 + 1000 / 32);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
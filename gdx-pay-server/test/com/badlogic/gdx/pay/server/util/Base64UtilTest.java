@@ -0,0 +1,216 @@
+package com.badlogic.gdx.pay.server.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Base64UtilTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void encodingStreamMatchesEncode() throws IOException {
+        Random random = new Random(42);
+        for (int size = 0; size < 50; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            OutputStream out = new Base64Util.EncodingOutputStream(encoded, Base64Util.regularMap, 0, "\n", 8);
+            // odd chunk sizes, so blocks span writes
+            for (int i = 0; i < size; i += 5) {
+                out.write(data, i, Math.min(5, size - i));
+            }
+            out.close();
+
+            assertEquals(new String(Base64Util.encode(data)), new String(encoded.toByteArray(), US_ASCII));
+        }
+    }
+
+    @Test
+    public void encodingStreamMatchesEncodeLines() throws IOException {
+        byte[] data = new byte[1000];
+        new Random(7).nextBytes(data);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Base64Util.EncodingOutputStream out = Base64Util.encodingStream(encoded, Base64Util.regularMap, 76, "\n");
+        for (byte b : data) {
+            out.write(b);
+        }
+        out.finish();
+
+        assertEquals(Base64Util.encodeLines(data), new String(encoded.toByteArray(), US_ASCII));
+    }
+
+    @Test
+    public void decodingStreamMatchesDecode() throws IOException {
+        Random random = new Random(42);
+        for (int size = 0; size < 50; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            byte[] encoded = Base64Util.encodeLines(data, 0, size, 8, "\r\n", Base64Util.regularMap).getBytes(US_ASCII);
+
+            InputStream in = new Base64Util.DecodingInputStream(new ByteArrayInputStream(encoded), Base64Util.regularMap, 5);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                decoded.write(chunk, 0, read);
+            }
+
+            assertArrayEquals(data, decoded.toByteArray());
+        }
+    }
+
+    @Test
+    public void decodingStreamAcceptsUnpaddedInput() throws IOException {
+        InputStream in = Base64Util.decodingStream(new ByteArrayInputStream("aGk".getBytes(US_ASCII)));
+
+        assertEquals('h', in.read());
+        assertEquals('i', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void decodingStreamRejectsIllegalCharacters() throws IOException {
+        InputStream in = Base64Util.decodingStream(new ByteArrayInputStream("aG*k".getBytes(US_ASCII)));
+
+        in.read(new byte[10]);
+    }
+
+    @Test
+    public void decodeIntoHeapBufferMatchesJdk() {
+        Random random = new Random(42);
+        for (int size = 0; size < 20; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            // a slice, so the array offset is not zero either
+            ByteBuffer out = ByteBuffer.wrap(new byte[size + 10], 2, size + 8).slice();
+            out.position(3);
+
+            assertEquals(size, Base64Util.decode(Base64.getEncoder().encodeToString(data), out));
+
+            assertEquals(3 + size, out.position());
+            int start = out.arrayOffset() + 3;
+            assertArrayEquals(data, Arrays.copyOfRange(out.array(), start, start + size));
+            assertEquals(0, out.get(2));
+            assertEquals(0, out.array()[start + size]);
+        }
+    }
+
+    @Test
+    public void decodeIntoDirectBufferMatchesJdk() {
+        Random random = new Random(42);
+        for (int size = 0; size < 20; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            ByteBuffer out = ByteBuffer.allocateDirect(size + 4);
+            out.position(3);
+            String encoded = Base64.getUrlEncoder().encodeToString(data);
+
+            assertEquals(size, Base64Util.decode(encoded, out, Base64Util.urlsafeMap));
+
+            assertEquals(3 + size, out.position());
+            byte[] decoded = new byte[size];
+            out.position(3);
+            out.get(decoded);
+            assertArrayEquals(data, decoded);
+        }
+    }
+
+    @Test
+    public void decodeAsciiBytesMatchesJdk() {
+        Random random = new Random(42);
+        for (int size = 0; size < 20; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            byte[] src = ("xx" + Base64.getUrlEncoder().encodeToString(data) + "yyy").getBytes(US_ASCII);
+            byte[] dst = new byte[size + 6];
+
+            assertEquals(size, Base64Util.decode(src, 2, src.length - 5, dst, 5, Base64Util.urlsafeMap));
+
+            assertArrayEquals(data, Arrays.copyOfRange(dst, 5, 5 + size));
+            assertArrayEquals(new byte[5], Arrays.copyOf(dst, 5));
+            assertEquals(0, dst[5 + size]);
+        }
+        byte[] src = Base64.getEncoder().encode("hi!".getBytes(US_ASCII));
+        byte[] dst = new byte[3];
+        assertEquals(3, Base64Util.decode(src, 0, src.length, dst, 0));
+        assertArrayEquals("hi!".getBytes(US_ASCII), dst);
+    }
+
+    @Test
+    public void decodedLengthAndDecodeUnpaddedMatchJdk() {
+        Random random = new Random(42);
+        for (int size = 0; size < 20; size++) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            String padded = Base64.getUrlEncoder().encodeToString(data);
+            String unpadded = Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+
+            assertEquals(size, Base64Util.decodedLength(padded));
+            assertArrayEquals(data, Base64Util.decodeUnpadded(unpadded, Base64Util.urlsafeMap));
+            assertArrayEquals(data, Base64Util.decodeUnpadded(padded, Base64Util.urlsafeMap));
+        }
+    }
+
+    @Test
+    public void rejectsInvalidLengths() {
+        expectFailure(IllegalArgumentException.class, () -> Base64Util.decodedLength("aGk"));
+        expectFailure(IllegalArgumentException.class, () -> Base64Util.decode("aGk", ByteBuffer.allocate(10)));
+        expectFailure(IllegalArgumentException.class,
+                () -> Base64Util.decode("aGk".getBytes(US_ASCII), 0, 3, new byte[10], 0));
+        expectFailure(IllegalArgumentException.class, () -> Base64Util.decodeUnpadded("aGkha", Base64Util.urlsafeMap));
+    }
+
+    @Test
+    public void rejectsTooSmallDestinations() {
+        ByteBuffer heap = ByteBuffer.allocate(4);
+        heap.position(2);
+        expectFailure(BufferOverflowException.class, () -> Base64Util.decode("aGkh", heap));
+        assertEquals(2, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(2);
+        expectFailure(BufferOverflowException.class, () -> Base64Util.decode("aGkh", direct));
+        assertEquals(0, direct.position());
+
+        byte[] src = "aGkhaGkh".getBytes(US_ASCII);
+        expectFailure(IndexOutOfBoundsException.class, () -> Base64Util.decode(src, 0, 8, new byte[8], 3));
+        assertEquals(3, Base64Util.decode(src, 4, 4, new byte[8], 5));
+    }
+
+    @Test
+    public void rejectsIllegalCharacters() {
+        for (String illegal : new String[] {"aG*k", "aGk\u00e9", "a=kh", "aGk-"}) {
+            expectFailure(IllegalArgumentException.class, () -> Base64Util.decode(illegal, ByteBuffer.allocate(3)));
+            expectFailure(IllegalArgumentException.class,
+                    () -> Base64Util.decode(illegal, ByteBuffer.allocateDirect(3)));
+        }
+        byte[] nonAscii = {'a', 'G', (byte)0xc3, 'k'};
+        expectFailure(IllegalArgumentException.class, () -> Base64Util.decode(nonAscii, 0, 4, new byte[3], 0));
+        expectFailure(IllegalArgumentException.class,
+                () -> Base64Util.decode("aGk_".getBytes(US_ASCII), 0, 4, new byte[3], 0));
+        expectFailure(IllegalArgumentException.class, () -> Base64Util.decodeUnpadded("aGk+", Base64Util.urlsafeMap));
+    }
+
+    private static void expectFailure(Class<? extends RuntimeException> type, Runnable action) {
+        try {
+            action.run();
+            fail("Expected " + type.getSimpleName());
+        } catch (RuntimeException e) {
+            assertTrue(e.toString(), type.isInstance(e));
+        }
+    }
+}
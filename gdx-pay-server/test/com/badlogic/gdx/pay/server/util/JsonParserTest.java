@@ -0,0 +1,69 @@
+package com.badlogic.gdx.pay.server.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsonParserTest {
+
+    @Test
+    public void parsesValues() {
+        Map<String, Object> object = JsonParser.parseObject(
+                "{\"s\":\"a\\u00e9\\n\",\"i\":-12,\"d\":1.5e2,\"b\":true,\"n\":null,\"a\":[1,{\"x\":false}],\"o\":{}}");
+
+        assertEquals("a\u00e9\n", object.get("s"));
+        assertEquals(-12L, object.get("i"));
+        assertEquals(150.0, object.get("d"));
+        assertEquals(Boolean.TRUE, object.get("b"));
+        assertTrue(object.containsKey("n"));
+        assertNull(object.get("n"));
+        assertEquals(2, ((List<?>)object.get("a")).size());
+        assertTrue(((Map<?, ?>)object.get("o")).isEmpty());
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        for (String json : Arrays.asList("", "{", "{\"a\"}", "{\"a\":1,}", "[1 2]", "\"open", "{\"a\":tru}", "{} x",
+                "{\"a\":\"\\u12\"}", "{\"a\":1-2}")) {
+            try {
+                JsonParser.parse(json);
+                fail(json);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        try {
+            JsonParser.parseObject("[]");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void limitsNesting() {
+        assertNotNull(JsonParser.parse(nested(JsonParser.MAX_DEPTH)));
+        try {
+            JsonParser.parse(nested(JsonParser.MAX_DEPTH + 1));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        char[] open = new char[200000];
+        Arrays.fill(open, '[');
+        try {
+            JsonParser.parse(new String(open));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static String nested(int depth) {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < depth; i++) json.append(i % 2 == 0 ? "[" : "{\"a\":");
+        json.append(0);
+        for (int i = depth - 1; i >= 0; i--) json.append(i % 2 == 0 ? "]" : "}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.badlogic.gdx.pay.server.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamReaderTest {
+
+    @Test
+    public void decodesSurrogatePairs() throws IOException {
+        JsonStreamReader reader = reader("[\"\\ud83d\\ude00\",\"\\ud83d\\n\"]");
+
+        reader.beginArray();
+        assertEquals("\ud83d\ude00", reader.nextString());
+        String lone = reader.nextString();
+        assertTrue(lone.endsWith("\n"));
+        assertEquals(-1, lone.indexOf('n'));
+        reader.endArray();
+    }
+
+    @Test
+    public void loneHighSurrogateKeepsClosingQuote() throws IOException {
+        JsonStreamReader reader = reader("{\"a\":\"x\\ud83d\",\"b\":1}");
+
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        assertTrue(reader.nextString().startsWith("x"));
+        assertEquals("b", reader.nextName());
+        assertEquals(1L, reader.nextLong());
+        reader.endObject();
+    }
+
+    @Test
+    public void skipsNestedValues() throws IOException {
+        JsonStreamReader reader = reader("{\"skip\":{\"a\":[1,\"]\",{}],\"b\":null},\"status\":\"21003\"}");
+
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("status", reader.nextName());
+        assertEquals(21003L, reader.nextLong());
+        reader.endObject();
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void rejectsMisplacedSeparators() {
+        for (String json : new String[] {"{\"a\" 1}", "{\"a\":1 \"b\":2}", "[1,,2]", "[,1]", "{,\"a\":1}", "{\"a\":1,}"}) {
+            try {
+                JsonStreamReader reader = reader(json);
+                reader.nextValue();
+                fail(json);
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    private static JsonStreamReader reader(String json) {
+        // a tiny buffer so every escape spans a refill
+        return new JsonStreamReader(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))), new byte[3]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.badlogic.gdx.pay.server.util;
+
+import com.badlogic.gdx.pay.Transaction;
+import com.badlogic.gdx.pay.server.PurchaseVerifier;
+import com.badlogic.gdx.pay.server.PurchaseVerifierManager;
+import com.badlogic.gdx.pay.server.VerificationResult;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VerificationExecutorsTest {
+
+    private static final PurchaseVerifier VALID = new PurchaseVerifier() {
+        @Override
+        public String storeName() {
+            return "store";
+        }
+
+        @Override
+        public boolean isValid(Transaction transaction) {
+            return true;
+        }
+    };
+
+    @Test
+    public void sharedExecutorCannotBeShutDown() throws Exception {
+        ExecutorService shared = VerificationExecutors.shared();
+        try {
+            shared.shutdown();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            shared.shutdownNow();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        assertFalse(shared.isShutdown());
+        assertEquals("done", shared.submit(() -> "done").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void boundedExecutorRejectsWithFailedFuture() throws Exception {
+        ExecutorService executor = VerificationExecutors.newBoundedExecutor(1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<?> running = executor.submit(() -> {
+                release.await();
+                return null;
+            });
+            Future<?> queued = executor.submit(() -> null);
+
+            try {
+                VALID.isValidAsync(new Transaction(), executor).toCompletableFuture().get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof RejectedExecutionException);
+            }
+
+            PurchaseVerifierManager manager = new PurchaseVerifierManager();
+            manager.setExecutor(executor);
+            manager.addVerifier(VALID);
+            Transaction transaction = new Transaction();
+            transaction.setStoreName("store");
+            VerificationResult result = manager.isValidAsync(transaction).toCompletableFuture().get(5, TimeUnit.SECONDS);
+            assertEquals(VerificationResult.Status.RETRYABLE, result.getStatus());
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+            assertTrue(VALID.isValidAsync(new Transaction(), executor).toCompletableFuture().get(5, TimeUnit.SECONDS).isValid());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
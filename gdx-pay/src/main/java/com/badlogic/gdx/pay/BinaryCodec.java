@@ -0,0 +1,518 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+/** Compact, versioned binary encoding of {@link Transaction}, {@link Information} and {@link FreeTrialPeriod}, e.g. to
+ * persist transactions or to ship them between client and server.
+ * <p>
+ * Every record starts with a format version byte followed by a bit mask of the fields present; absent (null) fields take no
+ * space. Integers and times are variable-length encoded, store names defined in {@link PurchaseManagerConfig} are written
+ * as a single byte and read back as the interned constant. Records can be read and written as a stream over
+ * {@link DataOutput}/{@link DataInput} or directly from/into a {@link ByteBuffer}.
+ * <p>
+ * Readers accept records of all versions up to {@link #VERSION}; newer versions are rejected with an {@link IOException}.
+ * Records may come from untrusted peers: strings longer than {@link #MAX_STRING_LENGTH} bytes or than the input left are
+ * rejected with an {@link IOException} before any memory is allocated for them. */
+public final class BinaryCodec {
+
+	/** The current format version. */
+	public static final int VERSION = 1;
+
+	/** The maximum length of an encoded string in bytes. */
+	public static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	/** Strings of unknown remaining input are read in chunks of this size, so memory only grows with the bytes received. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** Store names written as their index + 1; 0 marks a store name written as string. Only ever append to this list. */
+	private static final String[] STORE_NAMES = {PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE,
+		PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON, PurchaseManagerConfig.STORE_NAME_ANDROID_HUAWEI,
+		PurchaseManagerConfig.STORE_NAME_ANDROID_SAMSUNG, PurchaseManagerConfig.STORE_NAME_ANDROID_NOKIA,
+		PurchaseManagerConfig.STORE_NAME_ANDROID_SLIDEME, PurchaseManagerConfig.STORE_NAME_ANDROID_APTOIDE,
+		PurchaseManagerConfig.STORE_NAME_ANDROID_APPLAND, PurchaseManagerConfig.STORE_NAME_ANDROID_YANDEX,
+		PurchaseManagerConfig.STORE_NAME_IOS_APPLE, PurchaseManagerConfig.STORE_NAME_DESKTOP_APPLE,
+		PurchaseManagerConfig.STORE_NAME_DESKTOP_STEAM, PurchaseManagerConfig.STORE_NAME_DESKTOP_WINDOWS,
+		PurchaseManagerConfig.STORE_NAME_GWT_GOOGLEWALLET};
+
+	// transaction fields
+	private static final int IDENTIFIER = 1;
+	private static final int STORE_NAME = 1 << 1;
+	private static final int ORDER_ID = 1 << 2;
+	private static final int REQUEST_ID = 1 << 3;
+	private static final int USER_ID = 1 << 4;
+	private static final int PURCHASE_TIME = 1 << 5;
+	private static final int PURCHASE_TEXT = 1 << 6;
+	private static final int PURCHASE_COST = 1 << 7;
+	private static final int PURCHASE_COST_CURRENCY = 1 << 8;
+	private static final int REVERSAL_TIME = 1 << 9;
+	private static final int REVERSAL_TEXT = 1 << 10;
+	private static final int TRANSACTION_DATA = 1 << 11;
+	private static final int TRANSACTION_DATA_SIGNATURE = 1 << 12;
+
+	// information fields
+	private static final int LOCAL_NAME = 1;
+	private static final int LOCAL_DESCRIPTION = 1 << 1;
+	private static final int LOCAL_PRICING = 1 << 2;
+	private static final int PRICE_IN_CENTS = 1 << 3;
+	private static final int PRICE_AS_DOUBLE = 1 << 4;
+	private static final int PRICE_CURRENCY_CODE = 1 << 5;
+	private static final int FREE_TRIAL_PERIOD = 1 << 6;
+
+	private BinaryCodec () {
+	}
+
+	public static void writeTransaction (Transaction transaction, DataOutput out) throws IOException {
+		writeTransaction(transaction, new DataOutputSink(out));
+	}
+
+	/** @throws java.nio.BufferOverflowException If the buffer has not enough space left. */
+	public static void writeTransaction (Transaction transaction, ByteBuffer buffer) {
+		try {
+			writeTransaction(transaction, new ByteBufferSink(buffer));
+		} catch (IOException e) {
+			// cannot happen for buffers
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Returns the encoded transaction. */
+	public static byte[] encode (Transaction transaction) {
+		ByteArraySink sink = new ByteArraySink();
+		try {
+			writeTransaction(transaction, sink);
+		} catch (IOException e) {
+			// cannot happen for arrays
+			throw new IllegalStateException(e);
+		}
+		return sink.toByteArray();
+	}
+
+	public static Transaction readTransaction (DataInput in) throws IOException {
+		return readTransaction(new DataInputSource(in));
+	}
+
+	public static Transaction readTransaction (ByteBuffer buffer) throws IOException {
+		return readTransaction(new ByteBufferSource(buffer));
+	}
+
+	/** Decodes a transaction encoded with {@link #encode(Transaction)}. */
+	public static Transaction decodeTransaction (byte[] bytes) throws IOException {
+		return readTransaction(ByteBuffer.wrap(bytes));
+	}
+
+	public static void writeInformation (Information information, DataOutput out) throws IOException {
+		writeInformation(information, new DataOutputSink(out));
+	}
+
+	/** @throws java.nio.BufferOverflowException If the buffer has not enough space left. */
+	public static void writeInformation (Information information, ByteBuffer buffer) {
+		try {
+			writeInformation(information, new ByteBufferSink(buffer));
+		} catch (IOException e) {
+			// cannot happen for buffers
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static Information readInformation (DataInput in) throws IOException {
+		return readInformation(new DataInputSource(in));
+	}
+
+	public static Information readInformation (ByteBuffer buffer) throws IOException {
+		return readInformation(new ByteBufferSource(buffer));
+	}
+
+	public static void writeFreeTrialPeriod (FreeTrialPeriod period, DataOutput out) throws IOException {
+		DataOutputSink sink = new DataOutputSink(out);
+		sink.writeByte(VERSION);
+		writeFreeTrialPeriodFields(period, sink);
+	}
+
+	public static FreeTrialPeriod readFreeTrialPeriod (DataInput in) throws IOException {
+		DataInputSource source = new DataInputSource(in);
+		readVersion(source);
+		return readFreeTrialPeriodFields(source);
+	}
+
+	private static void writeTransaction (Transaction transaction, Sink out) throws IOException {
+		int fields = 0;
+		if (transaction.getIdentifier() != null) fields |= IDENTIFIER;
+		if (transaction.getStoreName() != null) fields |= STORE_NAME;
+		if (transaction.getOrderId() != null) fields |= ORDER_ID;
+		if (transaction.getRequestId() != null) fields |= REQUEST_ID;
+		if (transaction.getUserId() != null) fields |= USER_ID;
+		if (transaction.getPurchaseTime() != null) fields |= PURCHASE_TIME;
+		if (transaction.getPurchaseText() != null) fields |= PURCHASE_TEXT;
+		if (transaction.getPurchaseCost() != 0) fields |= PURCHASE_COST;
+		if (transaction.getPurchaseCostCurrency() != null) fields |= PURCHASE_COST_CURRENCY;
+		if (transaction.getReversalTime() != null) fields |= REVERSAL_TIME;
+		if (transaction.getReversalText() != null) fields |= REVERSAL_TEXT;
+		if (transaction.getTransactionData() != null) fields |= TRANSACTION_DATA;
+		if (transaction.getTransactionDataSignature() != null) fields |= TRANSACTION_DATA_SIGNATURE;
+
+		out.writeByte(VERSION);
+		writeVarLong(out, fields);
+		if ((fields & IDENTIFIER) != 0) writeString(out, transaction.getIdentifier());
+		if ((fields & STORE_NAME) != 0) writeStoreName(out, transaction.getStoreName());
+		if ((fields & ORDER_ID) != 0) writeString(out, transaction.getOrderId());
+		if ((fields & REQUEST_ID) != 0) writeString(out, transaction.getRequestId());
+		if ((fields & USER_ID) != 0) writeString(out, transaction.getUserId());
+		if ((fields & PURCHASE_TIME) != 0) writeSignedVarLong(out, transaction.getPurchaseTime().getTime());
+		if ((fields & PURCHASE_TEXT) != 0) writeString(out, transaction.getPurchaseText());
+		if ((fields & PURCHASE_COST) != 0) writeSignedVarLong(out, transaction.getPurchaseCost());
+		if ((fields & PURCHASE_COST_CURRENCY) != 0) writeString(out, transaction.getPurchaseCostCurrency());
+		if ((fields & REVERSAL_TIME) != 0) writeSignedVarLong(out, transaction.getReversalTime().getTime());
+		if ((fields & REVERSAL_TEXT) != 0) writeString(out, transaction.getReversalText());
+		if ((fields & TRANSACTION_DATA) != 0) writeString(out, transaction.getTransactionData());
+		if ((fields & TRANSACTION_DATA_SIGNATURE) != 0) writeString(out, transaction.getTransactionDataSignature());
+	}
+
+	private static Transaction readTransaction (Source in) throws IOException {
+		readVersion(in);
+		long fields = readVarLong(in);
+		Transaction transaction = new Transaction();
+		if ((fields & IDENTIFIER) != 0) transaction.setIdentifier(readString(in));
+		if ((fields & STORE_NAME) != 0) transaction.setStoreName(readStoreName(in));
+		if ((fields & ORDER_ID) != 0) transaction.setOrderId(readString(in));
+		if ((fields & REQUEST_ID) != 0) transaction.setRequestId(readString(in));
+		if ((fields & USER_ID) != 0) transaction.setUserId(readString(in));
+		if ((fields & PURCHASE_TIME) != 0) transaction.setPurchaseTime(new Date(readSignedVarLong(in)));
+		if ((fields & PURCHASE_TEXT) != 0) transaction.setPurchaseText(readString(in));
+		if ((fields & PURCHASE_COST) != 0) transaction.setPurchaseCost((int)readSignedVarLong(in));
+		if ((fields & PURCHASE_COST_CURRENCY) != 0) transaction.setPurchaseCostCurrency(readString(in));
+		if ((fields & REVERSAL_TIME) != 0) transaction.setReversalTime(new Date(readSignedVarLong(in)));
+		if ((fields & REVERSAL_TEXT) != 0) transaction.setReversalText(readString(in));
+		if ((fields & TRANSACTION_DATA) != 0) transaction.setTransactionData(readString(in));
+		if ((fields & TRANSACTION_DATA_SIGNATURE) != 0) transaction.setTransactionDataSignature(readString(in));
+		return transaction;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void writeInformation (Information information, Sink out) throws IOException {
+		int fields = 0;
+		if (information.getLocalName() != null) fields |= LOCAL_NAME;
+		if (information.getLocalDescription() != null) fields |= LOCAL_DESCRIPTION;
+		if (information.getLocalPricing() != null) fields |= LOCAL_PRICING;
+		if (information.getPriceInCents() != null) fields |= PRICE_IN_CENTS;
+		if (information.getPriceAsDouble() != null) fields |= PRICE_AS_DOUBLE;
+		if (information.getPriceCurrencyCode() != null) fields |= PRICE_CURRENCY_CODE;
+		if (information.getFreeTrialPeriod() != null) fields |= FREE_TRIAL_PERIOD;
+
+		out.writeByte(VERSION);
+		writeVarLong(out, fields);
+		if ((fields & LOCAL_NAME) != 0) writeString(out, information.getLocalName());
+		if ((fields & LOCAL_DESCRIPTION) != 0) writeString(out, information.getLocalDescription());
+		if ((fields & LOCAL_PRICING) != 0) writeString(out, information.getLocalPricing());
+		if ((fields & PRICE_IN_CENTS) != 0) writeSignedVarLong(out, information.getPriceInCents());
+		if ((fields & PRICE_AS_DOUBLE) != 0) writeFixedLong(out, Double.doubleToLongBits(information.getPriceAsDouble()));
+		if ((fields & PRICE_CURRENCY_CODE) != 0) writeString(out, information.getPriceCurrencyCode());
+		if ((fields & FREE_TRIAL_PERIOD) != 0) writeFreeTrialPeriodFields(information.getFreeTrialPeriod(), out);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static Information readInformation (Source in) throws IOException {
+		readVersion(in);
+		long fields = readVarLong(in);
+		Information.Builder builder = Information.newBuilder();
+		if ((fields & LOCAL_NAME) != 0) builder.localName(readString(in));
+		if ((fields & LOCAL_DESCRIPTION) != 0) builder.localDescription(readString(in));
+		if ((fields & LOCAL_PRICING) != 0) builder.localPricing(readString(in));
+		if ((fields & PRICE_IN_CENTS) != 0) builder.priceInCents((int)readSignedVarLong(in));
+		if ((fields & PRICE_AS_DOUBLE) != 0) builder.priceAsDouble(Double.longBitsToDouble(readFixedLong(in)));
+		if ((fields & PRICE_CURRENCY_CODE) != 0) builder.priceCurrencyCode(readString(in));
+		if ((fields & FREE_TRIAL_PERIOD) != 0) builder.freeTrialPeriod(readFreeTrialPeriodFields(in));
+		return builder.build();
+	}
+
+	private static void writeFreeTrialPeriodFields (FreeTrialPeriod period, Sink out) throws IOException {
+		writeVarLong(out, period.getNumberOfUnits());
+		out.writeByte(period.getUnit().ordinal());
+	}
+
+	private static FreeTrialPeriod readFreeTrialPeriodFields (Source in) throws IOException {
+		int numberOfUnits = (int)readVarLong(in);
+		int unit = in.readByte();
+		FreeTrialPeriod.PeriodUnit[] units = FreeTrialPeriod.PeriodUnit.values();
+		if (unit >= units.length) {
+			throw new IOException("Unknown period unit: " + unit);
+		}
+		return new FreeTrialPeriod(numberOfUnits, units[unit]);
+	}
+
+	private static void readVersion (Source in) throws IOException {
+		int version = in.readByte();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported format version: " + version);
+		}
+	}
+
+	private static void writeStoreName (Sink out, String storeName) throws IOException {
+		for (int i = 0; i < STORE_NAMES.length; i++) {
+			if (STORE_NAMES[i].equals(storeName)) {
+				out.writeByte(i + 1);
+				return;
+			}
+		}
+		out.writeByte(0);
+		writeString(out, storeName);
+	}
+
+	private static String readStoreName (Source in) throws IOException {
+		int index = in.readByte();
+		if (index == 0) {
+			return readString(in);
+		}
+		if (index > STORE_NAMES.length) {
+			throw new IOException("Unknown store: " + index);
+		}
+		return STORE_NAMES[index - 1];
+	}
+
+	private static void writeString (Sink out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static String readString (Source in) throws IOException {
+		long length = readVarLong(in);
+		if (length < 0 || length > MAX_STRING_LENGTH) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		int remaining = in.remaining();
+		if (remaining >= 0 && length > remaining) {
+			throw new EOFException("String of " + length + " bytes, but only " + remaining + " bytes left");
+		}
+		return new String(readBytes(in, (int)length, remaining >= 0), UTF_8);
+	}
+
+	private static byte[] readBytes (Source in, int length, boolean available) throws IOException {
+		if (available || length <= CHUNK_SIZE) {
+			byte[] bytes = new byte[length];
+			in.readFully(bytes, 0, length);
+			return bytes;
+		}
+		// the length is not vouched for by the input: grow with the bytes actually read
+		byte[] bytes = new byte[CHUNK_SIZE];
+		int read = 0;
+		while (read < length) {
+			if (read == bytes.length) {
+				byte[] grown = new byte[(int)Math.min(length, bytes.length * 2L)];
+				System.arraycopy(bytes, 0, grown, 0, read);
+				bytes = grown;
+			}
+			int count = Math.min(bytes.length - read, CHUNK_SIZE);
+			in.readFully(bytes, read, count);
+			read += count;
+		}
+		return bytes;
+	}
+
+	/** Writes an unsigned value in 7 bit groups, least significant first; the high bit marks that more groups follow. */
+	private static void writeVarLong (Sink out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	private static long readVarLong (Source in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+
+	/** Zig-zag encodes the value first, so small negative values stay short too. */
+	private static void writeSignedVarLong (Sink out, long value) throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static long readSignedVarLong (Source in) throws IOException {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeFixedLong (Sink out, long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			out.writeByte((int)(value >>> shift));
+		}
+	}
+
+	private static long readFixedLong (Source in) throws IOException {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | in.readByte();
+		}
+		return value;
+	}
+
+	/** Where encoded bytes go. */
+	private interface Sink {
+		void writeByte (int b) throws IOException;
+
+		void write (byte[] bytes, int offset, int length) throws IOException;
+	}
+
+	/** Where encoded bytes come from. */
+	private interface Source {
+		/** Returns the next byte as unsigned value. */
+		int readByte () throws IOException;
+
+		void readFully (byte[] bytes, int offset, int length) throws IOException;
+
+		/** Returns the number of bytes left or -1 if unknown. */
+		int remaining ();
+	}
+
+	private static final class DataOutputSink implements Sink {
+		private final DataOutput out;
+
+		DataOutputSink (DataOutput out) {
+			this.out = out;
+		}
+
+		@Override
+		public void writeByte (int b) throws IOException {
+			out.writeByte(b);
+		}
+
+		@Override
+		public void write (byte[] bytes, int offset, int length) throws IOException {
+			out.write(bytes, offset, length);
+		}
+	}
+
+	private static final class ByteBufferSink implements Sink {
+		private final ByteBuffer buffer;
+
+		ByteBufferSink (ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void writeByte (int b) {
+			buffer.put((byte)b);
+		}
+
+		@Override
+		public void write (byte[] bytes, int offset, int length) {
+			buffer.put(bytes, offset, length);
+		}
+	}
+
+	private static final class ByteArraySink implements Sink {
+		private byte[] bytes = new byte[256];
+		private int length;
+
+		@Override
+		public void writeByte (int b) {
+			ensureCapacity(1);
+			bytes[length++] = (byte)b;
+		}
+
+		@Override
+		public void write (byte[] src, int offset, int count) {
+			ensureCapacity(count);
+			System.arraycopy(src, offset, bytes, length, count);
+			length += count;
+		}
+
+		private void ensureCapacity (int count) {
+			if (length + count > bytes.length) {
+				byte[] grown = new byte[Math.max(bytes.length * 2, length + count)];
+				System.arraycopy(bytes, 0, grown, 0, length);
+				bytes = grown;
+			}
+		}
+
+		byte[] toByteArray () {
+			byte[] result = new byte[length];
+			System.arraycopy(bytes, 0, result, 0, length);
+			return result;
+		}
+	}
+
+	private static final class DataInputSource implements Source {
+		private final DataInput in;
+
+		DataInputSource (DataInput in) {
+			this.in = in;
+		}
+
+		@Override
+		public int readByte () throws IOException {
+			return in.readUnsignedByte();
+		}
+
+		@Override
+		public void readFully (byte[] bytes, int offset, int length) throws IOException {
+			in.readFully(bytes, offset, length);
+		}
+
+		@Override
+		public int remaining () {
+			return -1;
+		}
+	}
+
+	private static final class ByteBufferSource implements Source {
+		private final ByteBuffer buffer;
+
+		ByteBufferSource (ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int readByte () throws IOException {
+			try {
+				return buffer.get() & 0xFF;
+			} catch (BufferUnderflowException e) {
+				throw new EOFException();
+			}
+		}
+
+		@Override
+		public void readFully (byte[] bytes, int offset, int length) throws IOException {
+			if (buffer.remaining() < length) {
+				throw new EOFException();
+			}
+			buffer.get(bytes, offset, length);
+		}
+
+		@Override
+		public int remaining () {
+			return buffer.remaining();
+		}
+	}
+}
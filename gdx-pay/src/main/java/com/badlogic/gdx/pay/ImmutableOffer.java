@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** An immutable {@link Offer}, see {@link Offer#snapshot()}. All fields are final, so no reads need to lock. */
+final class ImmutableOffer extends Offer {
+
+	private final OfferType type;
+	private final String identifier;
+	private final Map<String, String> identifierForStores;
+
+	ImmutableOffer (OfferType type, String identifier, Map<String, String> identifierForStores) {
+		this.type = type;
+		this.identifier = identifier;
+		this.identifierForStores = Collections.unmodifiableMap(new HashMap<String, String>(identifierForStores));
+	}
+
+	@Override
+	public OfferType getType () {
+		return type;
+	}
+
+	@Override
+	public Offer setType (OfferType type) {
+		throw new UnsupportedOperationException("Offer is immutable");
+	}
+
+	@Override
+	public String getIdentifier () {
+		return identifier;
+	}
+
+	@Override
+	public Offer setIdentifier (String identifier) {
+		throw new UnsupportedOperationException("Offer is immutable");
+	}
+
+	@Override
+	public String getIdentifierForStore (String storeName) {
+		String identifier = identifierForStores.get(storeName);
+		return identifier != null ? identifier : this.identifier;
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> getIdentifierForStores () {
+		return identifierForStores.entrySet();
+	}
+
+	@Override
+	public Offer putIdentifierForStore (String storeName, String identifierForStore) {
+		throw new UnsupportedOperationException("Offer is immutable");
+	}
+
+	@Override
+	public Offer snapshot () {
+		return this;
+	}
+
+	@Override
+	public boolean isImmutable () {
+		return true;
+	}
+
+	@Override
+	Map<String, String> copyIdentifierForStores () {
+		return identifierForStores;
+	}
+
+	@Override
+	public String toString() {
+		return "Offer{" +
+				"type=" + type +
+				", identifier='" + identifier + '\'' +
+				", identifierForStores=" + identifierForStores +
+				'}';
+	}
+}
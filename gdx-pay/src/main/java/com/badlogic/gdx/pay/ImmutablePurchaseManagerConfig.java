@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2011 See AUTHORS file.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.badlogic.gdx.pay;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** An immutable {@link PurchaseManagerConfig}, see {@link PurchaseManagerConfig#snapshot()}. The offers and their index
+ * are computed once, so no reads need to lock. */
+final class ImmutablePurchaseManagerConfig extends PurchaseManagerConfig {
+
+	private final Offer[] offers;
+	private final OfferIndex index;
+	private final Map<String, Object> storeParams;
+
+	/** @param offers Immutable offers. */
+	ImmutablePurchaseManagerConfig (List<Offer> offers, Map<String, Object> storeParams) {
+		this.offers = offers.toArray(new Offer[0]);
+		// the offers never change: the index is never checked against Offer.modCount()
+		this.index = OfferIndex.of(offers, 0);
+		this.storeParams = Collections.unmodifiableMap(new HashMap<String, Object>(storeParams));
+	}
+
+	@Override
+	public void addOffer (Offer offer) {
+		throw new UnsupportedOperationException("Configuration is immutable");
+	}
+
+	@Override
+	public Offer getOffer (String identifier) {
+		return index.getOffer(identifier);
+	}
+
+	@Override
+	public boolean hasAnyOfferWithType (OfferType offerType) {
+		return index.hasAnyOfferWithType(offerType);
+	}
+
+	@Override
+	public List<String> getOfferIdentifiers (OfferType offerType) {
+		return index.getIdentifiers(offerType, null);
+	}
+
+	@Override
+	public List<String> getOfferIdentifiersForStore (OfferType offerType, String storeName) {
+		return index.getIdentifiers(offerType, storeName);
+	}
+
+	@Override
+	public Offer getOfferForStore (String storeName, String identifierForStore) {
+		return index.getOfferForStore(storeName, identifierForStore);
+	}
+
+	@Override
+	public Offer getOffer (int index) {
+		return offers[index];
+	}
+
+	@Override
+	public int getOfferCount () {
+		return offers.length;
+	}
+
+	@Override
+	public PurchaseManagerConfig snapshot () {
+		return this;
+	}
+
+	@Override
+	public boolean isImmutable () {
+		return true;
+	}
+
+	@Override
+	public void addStoreParam (String storeName, Object param) {
+		throw new UnsupportedOperationException("Configuration is immutable");
+	}
+
+	@Override
+	public Object getStoreParam (String storeName) {
+		return storeParams.get(storeName);
+	}
+}
@@ -19,6 +19,7 @@ package com.badlogic.gdx.pay;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** A product offer that can be purchased. */
 public class Offer {
@@ -32,12 +33,17 @@ public class Offer {
 	/** Store specific identifiers. For simplicity it's probably best to not set one but use the default identifier instead. */
 	private Map<String, String> identifierForStores = new HashMap<String, String>(16);
 
+	/** Incremented whenever any offer changes. Configurations compare it with the count their index was built at, so offers
+	 * need no references to the configurations they were added to. */
+	private static final AtomicInteger modCount = new AtomicInteger();
+
 	public synchronized OfferType getType () {
 		return type;
 	}
 
 	public synchronized Offer setType (OfferType type) {
 		this.type = type;
+		changed();
 
 		// and return this for chaining
 		return this;
@@ -49,6 +55,7 @@ public class Offer {
 
 	public synchronized Offer setIdentifier (String identifier) {
 		this.identifier = identifier;
+		changed();
 
 		// and return this for chaining
 		return this;
@@ -70,11 +77,39 @@ public class Offer {
 
 	public synchronized Offer putIdentifierForStore (String storeName, String identifierForStore) {
 		identifierForStores.put(storeName, identifierForStore);
+		changed();
 
 		// and return this for chaining
 		return this;
 	}
 
+	/** Returns a copy of the store specific identifiers. */
+	synchronized Map<String, String> copyIdentifierForStores () {
+		return new HashMap<String, String>(identifierForStores);
+	}
+
+	/** Returns an immutable copy of this offer. Reading it takes no locks; changing it throws
+	 * {@link UnsupportedOperationException}.
+	 *
+	 * @return The snapshot, or this if the offer already is one. */
+	public synchronized Offer snapshot () {
+		return new ImmutableOffer(type, identifier, identifierForStores);
+	}
+
+	/** Returns true if this offer is an immutable {@link #snapshot()}. */
+	public boolean isImmutable () {
+		return false;
+	}
+
+	/** Returns the number of changes made to any offer so far. */
+	static int modCount () {
+		return modCount.get();
+	}
+
+	private void changed () {
+		modCount.incrementAndGet();
+	}
+
 	@Override
 	public String toString() {
 		return "Offer{" +
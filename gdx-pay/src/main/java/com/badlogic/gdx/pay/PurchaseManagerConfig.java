@@ -17,9 +17,15 @@
 package com.badlogic.gdx.pay;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** This configuration is set in your "core"-project and will be passed on to the active InApp store automatically.
  * The configuration for offers can be updated on the fly, e.g. by downloading the lastest offers from your server
@@ -49,6 +55,10 @@ public class PurchaseManagerConfig {
 	/** The store-specific parameters where needed. */
 	private Map<String, Object> storeParams;
 
+	/** Lookup index over the offers, or null if it has to be rebuilt. Read without locking, updated on {@link #addOffer} and
+	 * rebuilt once any offer changed since it was built. */
+	private volatile OfferIndex index;
+
 	public PurchaseManagerConfig () {
 		offers = new ArrayList<Offer>(16);
 		storeParams = new HashMap<String, Object>(16);
@@ -56,39 +66,47 @@ public class PurchaseManagerConfig {
 
 	public synchronized void addOffer (Offer offer) {
 		offers.add(offer);
+		// keep the index up to date if we can, else rebuild it on the next lookup
+		OfferIndex current = index;
+		if (current == null || current.modCount != Offer.modCount()
+			|| !current.add(offer, offer.copyIdentifierForStores())) {
+			index = null;
+		}
 	}
 
-	public synchronized Offer getOffer (String identifier) {
-		// search matching offer and return it
-		for (int i = 0; i < offers.size(); i++) {
-			if (offers.get(i).getIdentifier().equals(identifier)) {
-				return offers.get(i);
-			}
-		}
+	/** Returns the offer with the given identifier. Lock-free and O(1) unless offers have changed since the last lookup.
+	 *
+	 * @return The first offer added with this identifier or null if there is none. */
+	public Offer getOffer (String identifier) {
+		return index().getOffer(identifier);
+	}
 
-		// no matching offer found
-		return null;
+	/** Returns true if any offer has the given type. Lock-free unless offers have changed since the last lookup. */
+	public boolean hasAnyOfferWithType(OfferType offerType) {
+		return index().hasAnyOfferWithType(offerType);
 	}
 
-	public synchronized boolean hasAnyOfferWithType(OfferType offerType) {
-		for(Offer offer : offers) {
-			if (offer.getType() == offerType) {
-				return true;
-			}
-		}
-		return false;
+	/** Returns the default identifiers of all offers of a type, in the order the offers were added.
+	 *
+	 * @return An unmodifiable list, computed once and reused until the offers change. */
+	public List<String> getOfferIdentifiers (OfferType offerType) {
+		return index().getIdentifiers(offerType, null);
 	}
 
-	public synchronized Offer getOfferForStore (String storeName, String identifierForStore) {
-        // search matching offer and return it
-        for (int i = 0; i < offers.size(); i++) {
-            if (offers.get(i).getIdentifierForStore(storeName).equals(identifierForStore)) {
-                return offers.get(i);
-            }
-        }
+	/** Returns the identifiers for a store of all offers of a type, in the order the offers were added. Use it to build the
+	 * product queries of a store without going through all offers.
+	 *
+	 * @return An unmodifiable list, computed once per store and reused until the offers change. */
+	public List<String> getOfferIdentifiersForStore (OfferType offerType, String storeName) {
+		return index().getIdentifiers(offerType, storeName);
+	}
 
-	    // no matching offer found
-	    return null;
+	/** Returns the offer with the given store specific identifier, see {@link Offer#getIdentifierForStore(String)}. Lock-free
+	 * and O(1) unless offers have changed since the last lookup.
+	 *
+	 * @return The first offer added with this identifier for the store or null if there is none. */
+	public Offer getOfferForStore (String storeName, String identifierForStore) {
+		return index().getOfferForStore(storeName, identifierForStore);
 	}
 
 	public synchronized Offer getOffer (int index) {
@@ -99,6 +117,161 @@ public class PurchaseManagerConfig {
 		return offers.size();
 	}
 
+	private OfferIndex index () {
+		OfferIndex current = index;
+		return current != null && current.modCount == Offer.modCount() ? current : buildIndex();
+	}
+
+	private synchronized OfferIndex buildIndex () {
+		int modCount = Offer.modCount();
+		OfferIndex current = index;
+		if (current != null && current.modCount == modCount) {
+			return current;
+		}
+
+		// an offer changing while we build bumps the count again, so the index is rebuilt on the next lookup
+		current = OfferIndex.of(offers, modCount);
+		index = current;
+		return current;
+	}
+
+	/** Lookup tables over the offers. Offers are only ever added to an index; any other change replaces it. */
+	static final class OfferIndex {
+		/** Key of the default identifiers in {@link #identifiersByStore}; store names are never empty. */
+		private static final String DEFAULT_IDENTIFIERS = "";
+
+		final Map<String, Offer> byIdentifier = new ConcurrentHashMap<String, Offer>();
+		/** Only stores for which offers have specific identifiers get their own table. */
+		final Map<String, Map<String, Offer>> byStore = new HashMap<String, Map<String, Offer>>();
+		/** The offer types present, replaced whenever a new type is added. */
+		private volatile Set<OfferType> offerTypes = Collections.unmodifiableSet(EnumSet.noneOf(OfferType.class));
+		/** The offers per type, guarded by this. */
+		private final Map<OfferType, List<Offer>> byType = new EnumMap<OfferType, List<Offer>>(OfferType.class);
+		/** Identifier lists per store and type, computed on demand and cleared whenever an offer is added. */
+		private final Map<String, Map<OfferType, List<String>>> identifiersByStore = new ConcurrentHashMap<String, Map<OfferType, List<String>>>();
+		/** The {@link Offer#modCount()} the offers were read at. */
+		final int modCount;
+
+		private OfferIndex (Set<String> storeNames, int modCount) {
+			this.modCount = modCount;
+			for (String storeName : storeNames) {
+				byStore.put(storeName, new ConcurrentHashMap<String, Offer>());
+			}
+		}
+
+		/** Indexes the offers in their order.
+		 * @param modCount The {@link Offer#modCount()} read before the offers. */
+		static OfferIndex of (List<Offer> offers, int modCount) {
+			List<Map<String, String>> identifierForStores = new ArrayList<Map<String, String>>(offers.size());
+			Set<String> storeNames = new HashSet<String>();
+			for (Offer offer : offers) {
+				Map<String, String> identifiers = offer.copyIdentifierForStores();
+				identifierForStores.add(identifiers);
+				storeNames.addAll(identifiers.keySet());
+			}
+			OfferIndex index = new OfferIndex(storeNames, modCount);
+			for (int i = 0; i < offers.size(); i++) {
+				index.add(offers.get(i), identifierForStores.get(i));
+			}
+			return index;
+		}
+
+		Offer getOffer (String identifier) {
+			return identifier != null ? byIdentifier.get(identifier) : null;
+		}
+
+		Offer getOfferForStore (String storeName, String identifierForStore) {
+			if (identifierForStore == null) {
+				return null;
+			}
+			Map<String, Offer> byStoreIdentifier = byStore.get(storeName);
+			// no offer has a specific identifier for the store: all use their default identifier
+			return byStoreIdentifier != null ? byStoreIdentifier.get(identifierForStore) : byIdentifier.get(identifierForStore);
+		}
+
+		boolean hasAnyOfferWithType (OfferType offerType) {
+			return offerType != null && offerTypes.contains(offerType);
+		}
+
+		List<String> getIdentifiers (OfferType offerType, String storeName) {
+			String key = storeName != null ? storeName : DEFAULT_IDENTIFIERS;
+			Map<OfferType, List<String>> identifiers = identifiersByStore.get(key);
+			if (identifiers == null) {
+				identifiers = buildIdentifiers(key, storeName);
+			}
+			List<String> list = identifiers.get(offerType);
+			return list != null ? list : Collections.<String>emptyList();
+		}
+
+		private synchronized Map<OfferType, List<String>> buildIdentifiers (String key, String storeName) {
+			Map<OfferType, List<String>> identifiers = new EnumMap<OfferType, List<String>>(OfferType.class);
+			for (Map.Entry<OfferType, List<Offer>> type : byType.entrySet()) {
+				List<String> list = new ArrayList<String>(type.getValue().size());
+				for (Offer offer : type.getValue()) {
+					String identifier = storeName != null ? offer.getIdentifierForStore(storeName) : offer.getIdentifier();
+					if (identifier != null) {
+						list.add(identifier);
+					}
+				}
+				identifiers.put(type.getKey(), Collections.unmodifiableList(list));
+			}
+			identifiersByStore.put(key, identifiers);
+			return identifiers;
+		}
+
+		/** Adds an offer behind the ones already indexed.
+		 * @return False if the offer has a specific identifier for a store the index has no table for. */
+		synchronized boolean add (Offer offer, Map<String, String> identifierForStores) {
+			if (!byStore.keySet().containsAll(identifierForStores.keySet())) {
+				return false;
+			}
+			putFirst(byIdentifier, offer.getIdentifier(), offer);
+			for (Map.Entry<String, Map<String, Offer>> store : byStore.entrySet()) {
+				String identifier = identifierForStores.get(store.getKey());
+				putFirst(store.getValue(), identifier != null ? identifier : offer.getIdentifier(), offer);
+			}
+
+			OfferType type = offer.getType();
+			if (type != null) {
+				List<Offer> offersOfType = byType.get(type);
+				if (offersOfType == null) {
+					offersOfType = new ArrayList<Offer>();
+					byType.put(type, offersOfType);
+					EnumSet<OfferType> types = EnumSet.of(type);
+					types.addAll(offerTypes);
+					offerTypes = Collections.unmodifiableSet(types);
+				}
+				offersOfType.add(offer);
+			}
+			identifiersByStore.clear();
+			return true;
+		}
+
+		private static void putFirst (Map<String, Offer> map, String key, Offer offer) {
+			if (key != null && !map.containsKey(key)) {
+				map.put(key, offer);
+			}
+		}
+	}
+
+	/** Returns an immutable copy of this configuration and its offers, e.g. to pass to the store once all offers are set
+	 * up. Reading a snapshot takes no locks; changing it throws {@link UnsupportedOperationException}. Store parameters are
+	 * copied shallowly.
+	 *
+	 * @return The snapshot, or this if the configuration already is one. */
+	public synchronized PurchaseManagerConfig snapshot () {
+		List<Offer> snapshotOffers = new ArrayList<Offer>(offers.size());
+		for (Offer offer : offers) {
+			snapshotOffers.add(offer.snapshot());
+		}
+		return new ImmutablePurchaseManagerConfig(snapshotOffers, storeParams);
+	}
+
+	/** Returns true if this configuration is an immutable {@link #snapshot()}. */
+	public boolean isImmutable () {
+		return false;
+	}
+
 	/** Adds a parameter for a store.
 	 *
 	 * @param storeName The name of the store.
@@ -0,0 +1,171 @@
+package com.badlogic.gdx.pay;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void transactionSurvivesRoundTrip() throws Exception {
+        Transaction transaction = fullTransaction();
+
+        Transaction decoded = BinaryCodec.decodeTransaction(BinaryCodec.encode(transaction));
+
+        assertTransactionEquals(transaction, decoded);
+    }
+
+    @Test
+    public void emptyTransactionSurvivesRoundTrip() throws Exception {
+        Transaction decoded = BinaryCodec.decodeTransaction(BinaryCodec.encode(new Transaction()));
+
+        assertTransactionEquals(new Transaction(), decoded);
+        assertEquals(2, BinaryCodec.encode(new Transaction()).length);
+    }
+
+    @Test
+    public void internsKnownStoreNames() throws Exception {
+        Transaction transaction = new Transaction();
+        transaction.setStoreName(new String(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE));
+
+        Transaction decoded = BinaryCodec.decodeTransaction(BinaryCodec.encode(transaction));
+
+        assertSame(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE, decoded.getStoreName());
+        assertEquals(3, BinaryCodec.encode(transaction).length);
+    }
+
+    @Test
+    public void keepsUnknownStoreNames() throws Exception {
+        Transaction transaction = new Transaction();
+        transaction.setStoreName("MyStore");
+
+        assertEquals("MyStore", BinaryCodec.decodeTransaction(BinaryCodec.encode(transaction)).getStoreName());
+    }
+
+    @Test
+    public void streamsSeveralRecords() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Information information = fullInformation();
+        FreeTrialPeriod period = new FreeTrialPeriod(2, FreeTrialPeriod.PeriodUnit.WEEK);
+        BinaryCodec.writeTransaction(fullTransaction(), out);
+        BinaryCodec.writeInformation(information, out);
+        BinaryCodec.writeFreeTrialPeriod(period, out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTransactionEquals(fullTransaction(), BinaryCodec.readTransaction(in));
+        assertInformationEquals(information, BinaryCodec.readInformation(in));
+        assertEquals(period, BinaryCodec.readFreeTrialPeriod(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void readsAndWritesByteBuffers() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        BinaryCodec.writeTransaction(fullTransaction(), buffer);
+        BinaryCodec.writeInformation(fullInformation(), buffer);
+        buffer.flip();
+
+        assertTransactionEquals(fullTransaction(), BinaryCodec.readTransaction(buffer));
+        assertInformationEquals(fullInformation(), BinaryCodec.readInformation(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void isMuchSmallerThanToString() {
+        Transaction transaction = fullTransaction();
+
+        assertTrue(BinaryCodec.encode(transaction).length < transaction.toString().length() / 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNewerVersions() throws Exception {
+        BinaryCodec.decodeTransaction(new byte[]{(byte) (BinaryCodec.VERSION + 1), 0});
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedInput() throws Exception {
+        byte[] encoded = BinaryCodec.encode(fullTransaction());
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        BinaryCodec.decodeTransaction(truncated);
+    }
+
+    @Test
+    public void rejectsCorruptStringLengths() throws Exception {
+        byte v = (byte) BinaryCodec.VERSION;
+        byte[][] corrupt = {
+                // identifier of 2 GB, 16 MB + 1 and 15 MB, none of them present
+                {v, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'},
+                {v, 1, (byte) 0x81, (byte) 0x80, (byte) 0x80, 0x08, 'a'},
+                {v, 1, (byte) 0x80, (byte) 0x80, (byte) 0xC0, 0x07, 'a'},
+                // negative length
+                {v, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                        (byte) 0xFF, (byte) 0xFF, 0x01}};
+        for (byte[] bytes : corrupt) {
+            try {
+                BinaryCodec.decodeTransaction(bytes);
+                fail();
+            } catch (IOException expected) {
+            }
+            try {
+                BinaryCodec.readTransaction(new DataInputStream(new ByteArrayInputStream(bytes)));
+                fail();
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    private static Transaction fullTransaction() {
+        Transaction transaction = new Transaction();
+        transaction.setIdentifier("full_edition");
+        transaction.setStoreName(PurchaseManagerConfig.STORE_NAME_IOS_APPLE);
+        transaction.setOrderId("1000000123456789");
+        transaction.setRequestId("request");
+        transaction.setUserId("user");
+        transaction.setPurchaseTime(new Date(1700000000123L));
+        transaction.setPurchaseText("Purchased: Full edition");
+        transaction.setPurchaseCost(499);
+        transaction.setPurchaseCostCurrency("EUR");
+        transaction.setReversalTime(new Date(-1000L));
+        transaction.setReversalText(Transaction.REVERSAL_TEXT_REFUNDED);
+        transaction.setTransactionData("{\"orderId\":\"GPA.1234\",\"purchaseState\":0}");
+        transaction.setTransactionDataSignature("c2lnbmF0dXJl");
+        return transaction;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Information fullInformation() {
+        return Information.newBuilder()
+                .localName("Full edition")
+                .localDescription("Access to all themes")
+                .localPricing("€ 1.00")
+                .priceInCents(100)
+                .priceAsDouble(0.99)
+                .priceCurrencyCode("EUR")
+                .freeTrialPeriod(new FreeTrialPeriod(3, FreeTrialPeriod.PeriodUnit.DAY))
+                .build();
+    }
+
+    private static void assertTransactionEquals(Transaction expected, Transaction actual) {
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void assertInformationEquals(Information expected, Information actual) {
+        assertEquals(expected, actual);
+        assertEquals(expected.getPriceInCents(), actual.getPriceInCents());
+        assertEquals(expected.getPriceAsDouble(), actual.getPriceAsDouble());
+        assertEquals(expected.getPriceCurrencyCode(), actual.getPriceCurrencyCode());
+        assertEquals(expected.getFreeTrialPeriod(), actual.getFreeTrialPeriod());
+    }
+}
@@ -0,0 +1,148 @@
+package com.badlogic.gdx.pay;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PurchaseManagerConfigTest {
+
+    @Test
+    public void findsOfferByIdentifier() {
+        PurchaseManagerConfig config = new PurchaseManagerConfig();
+        Offer first = new Offer().setType(OfferType.ENTITLEMENT).setIdentifier("full_edition");
+        Offer second = new Offer().setType(OfferType.CONSUMABLE).setIdentifier("coins");
+        config.addOffer(first);
+        config.addOffer(second);
+
+        assertSame(first, config.getOffer("full_edition"));
+        assertSame(second, config.getOffer("coins"));
+        assertNull(config.getOffer("unknown"));
+        assertNull(config.getOffer(null));
+    }
+
+    @Test
+    public void findsOfferForStoreBySpecificOrDefaultIdentifier() {
+        PurchaseManagerConfig config = new PurchaseManagerConfig();
+        Offer specific = new Offer().setIdentifier("full_edition")
+                .putIdentifierForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "com.app.full_edition");
+        Offer fallback = new Offer().setIdentifier("coins");
+        config.addOffer(specific);
+        config.addOffer(fallback);
+
+        assertSame(specific, config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "com.app.full_edition"));
+        assertNull(config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "full_edition"));
+        assertSame(fallback, config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "coins"));
+        assertSame(specific, config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE, "full_edition"));
+    }
+
+    @Test
+    public void firstAddedOfferWins() {
+        PurchaseManagerConfig config = new PurchaseManagerConfig();
+        Offer first = new Offer().setIdentifier("coins");
+        config.addOffer(first);
+        config.getOffer("coins");
+        config.addOffer(new Offer().setIdentifier("coins"));
+
+        assertSame(first, config.getOffer("coins"));
+        assertSame(first, config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE, "coins"));
+    }
+
+    @Test
+    public void indexFollowsChangesAfterLookup() {
+        PurchaseManagerConfig config = new PurchaseManagerConfig();
+        Offer offer = new Offer().setIdentifier("full_edition");
+        config.addOffer(offer);
+        assertSame(offer, config.getOffer("full_edition"));
+
+        Offer added = new Offer().setIdentifier("coins").putIdentifierForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON, "amazon_coins");
+        config.addOffer(added);
+        assertSame(added, config.getOffer("coins"));
+        assertSame(added, config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON, "amazon_coins"));
+
+        offer.putIdentifierForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON, "amazon_full");
+        assertSame(offer, config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON, "amazon_full"));
+        assertNull(config.getOfferForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_AMAZON, "full_edition"));
+
+        offer.setIdentifier("premium");
+        assertSame(offer, config.getOffer("premium"));
+        assertNull(config.getOffer("full_edition"));
+    }
+
+    @Test
+    public void indexFollowsChangesOfOffersSharedByConfigs() {
+        PurchaseManagerConfig first = new PurchaseManagerConfig();
+        PurchaseManagerConfig second = new PurchaseManagerConfig();
+        Offer offer = new Offer().setIdentifier("full_edition");
+        first.addOffer(offer);
+        second.addOffer(offer);
+        second.addOffer(offer);
+        assertSame(offer, first.getOffer("full_edition"));
+        assertSame(offer, second.getOffer("full_edition"));
+
+        offer.setIdentifier("premium");
+        second.addOffer(new Offer().setIdentifier("coins"));
+
+        assertSame(offer, first.getOffer("premium"));
+        assertSame(offer, second.getOffer("premium"));
+        assertNull(second.getOffer("full_edition"));
+        assertNotNull(second.getOffer("coins"));
+    }
+
+    @Test
+    public void snapshotIsDetachedAndImmutable() {
+        PurchaseManagerConfig config = new PurchaseManagerConfig();
+        Offer offer = new Offer().setType(OfferType.SUBSCRIPTION).setIdentifier("monthly")
+                .putIdentifierForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "com.app.monthly");
+        config.addOffer(offer);
+        config.addStoreParam(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE, "key");
+
+        PurchaseManagerConfig snapshot = config.snapshot();
+        offer.setIdentifier("yearly");
+        config.addOffer(new Offer().setType(OfferType.CONSUMABLE).setIdentifier("coins"));
+
+        assertTrue(snapshot.isImmutable());
+        assertSame(snapshot, snapshot.snapshot());
+        assertEquals(1, snapshot.getOfferCount());
+        assertEquals("monthly", snapshot.getOffer(0).getIdentifier());
+        assertSame(snapshot.getOffer(0), snapshot.getOffer("monthly"));
+        assertSame(snapshot.getOffer(0), snapshot.getOfferForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "com.app.monthly"));
+        assertTrue(snapshot.hasAnyOfferWithType(OfferType.SUBSCRIPTION));
+        assertFalse(snapshot.hasAnyOfferWithType(OfferType.CONSUMABLE));
+        assertEquals("key", snapshot.getStoreParam(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotRejectsNewOffers() {
+        new PurchaseManagerConfig().snapshot().addOffer(new Offer().setIdentifier("coins"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotOfferRejectsChanges() {
+        new Offer().setIdentifier("coins").snapshot().putIdentifierForStore(PurchaseManagerConfig.STORE_NAME_IOS_APPLE, "ios_coins");
+    }
+
+    @Test
+    public void keepsOfferTypesAndIdentifierListsUpToDate() {
+        PurchaseManagerConfig config = new PurchaseManagerConfig();
+        config.addOffer(new Offer().setType(OfferType.CONSUMABLE).setIdentifier("coins")
+                .putIdentifierForStore(PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE, "google_coins"));
+        config.addOffer(new Offer().setType(OfferType.ENTITLEMENT).setIdentifier("full_edition"));
+        config.addOffer(new Offer().setType(OfferType.CONSUMABLE).setIdentifier("gems"));
+
+        assertTrue(config.hasAnyOfferWithType(OfferType.CONSUMABLE));
+        assertFalse(config.hasAnyOfferWithType(OfferType.SUBSCRIPTION));
+        assertEquals(Arrays.asList("coins", "gems"), config.getOfferIdentifiers(OfferType.CONSUMABLE));
+        assertEquals(Arrays.asList("google_coins", "gems"),
+                config.getOfferIdentifiersForStore(OfferType.CONSUMABLE, PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE));
+        assertTrue(config.getOfferIdentifiers(OfferType.SUBSCRIPTION).isEmpty());
+
+        config.addOffer(new Offer().setType(OfferType.SUBSCRIPTION).setIdentifier("monthly"));
+
+        assertTrue(config.hasAnyOfferWithType(OfferType.SUBSCRIPTION));
+        assertEquals(Arrays.asList("monthly"),
+                config.getOfferIdentifiersForStore(OfferType.SUBSCRIPTION, PurchaseManagerConfig.STORE_NAME_ANDROID_GOOGLE));
+        assertEquals(config.getOfferIdentifiers(OfferType.CONSUMABLE), config.snapshot().getOfferIdentifiers(OfferType.CONSUMABLE));
+    }
+}